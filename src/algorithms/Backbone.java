@@ -0,0 +1,155 @@
+package algorithms;
+
+import java.util.Arrays;
+
+import utils.*;
+
+/**
+ * Calcula la columna vertebral (backbone) de una formula: los literales que
+ * son ciertos en todos sus modelos.
+ *
+ * Se parte de un modelo cualquiera, cuyos literales son los candidatos. Un
+ * candidato l pertenece a la columna si la formula con -l es insatisfacible.
+ * En lugar de probarlos de uno en uno, se prueban por bloques sobre un mismo
+ * {@link CDCLSat} incremental: se anade la clausula (-l1 + ... + -lk),
+ * activada por un selector que se pasa como hipotesis. Si no hay modelo,
+ * todos los del bloque pertenecen a la columna; si lo hay, al menos uno de
+ * ellos cambia de valor, y se descartan de una vez todos los candidatos que
+ * cambian en el nuevo modelo. Para que cambien cuantos mas mejor, antes de
+ * cada llamada se pide al resolutor que decida los candidatos al reves. Los
+ * literales de la columna se anaden como clausulas unitarias, lo que acelera
+ * las siguientes llamadas.
+ */
+public class Backbone {
+
+	private static final int DEFAULT_CHUNK_SIZE = 16;
+
+	private DimacsFormula formula;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	/* Solo se buscan en la columna las variables 1..candidateVariables */
+	private int candidateVariables = Integer.MAX_VALUE;
+
+	private long solverCalls = 0;
+	private long filtered = 0;
+
+	public Backbone(DimacsFormula formula) {
+		this.formula = formula;
+	}
+
+	/**
+	 * Numero maximo de candidatos que se prueban en cada llamada.
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	/**
+	 * Limita la columna a las variables 1..n, por ejemplo cuando las
+	 * siguientes son auxiliares de la traduccion a CNF.
+	 */
+	public void setCandidateVariables(int n) {
+		this.candidateVariables = n;
+	}
+
+	/**
+	 * @return los literales de la columna, ordenados por variable, o null si
+	 *         la formula no es satisfacible.
+	 */
+	public int[] compute() {
+		int numVars = formula.getNumVariables();
+		solverCalls = 0;
+		filtered = 0;
+		CDCLSat solver = new CDCLSat();
+		solver.addFormula(formula);
+		solverCalls++;
+		if (!Boolean.TRUE.equals(solver.solve())) {
+			return null;
+		}
+
+		/* Candidatos: los literales del primer modelo */
+		int numCandidates = Math.min(numVars, candidateVariables);
+		int[] candidates = new int[numCandidates];
+		boolean[] model = solver.getModel();
+		for (int v = 1; v <= numCandidates; v++) {
+			candidates[v - 1] = model[v] ? v : -v;
+		}
+		int[] backbone = new int[numVars];
+		int size = 0;
+		int selector = numVars;
+
+		while (numCandidates > 0) {
+			int k = Math.min(chunkSize, numCandidates);
+			int[] chunk = Arrays.copyOfRange(candidates, numCandidates - k, numCandidates);
+			for (int i = 0; i < numCandidates; i++) {
+				solver.setPhase(-candidates[i]);
+			}
+			Boolean result;
+			solverCalls++;
+			if (k == 1) {
+				result = solver.solve(-chunk[0]);
+			} else {
+				int[] blocking = new int[k + 1];
+				blocking[0] = -(++selector);
+				for (int i = 0; i < k; i++) {
+					blocking[i + 1] = -chunk[i];
+				}
+				solver.addClause(blocking);
+				result = solver.solve(selector);
+				/* La clausula del bloque no vuelve a usarse */
+				solver.addClause(-selector);
+			}
+
+			if (Boolean.FALSE.equals(result)) {
+				numCandidates -= k;
+				for (int lit : chunk) {
+					backbone[size++] = lit;
+					solver.addClause(lit);
+				}
+			} else if (Boolean.TRUE.equals(result)) {
+				/* Se descartan los candidatos que cambian en este modelo */
+				model = solver.getModel();
+				int kept = 0;
+				for (int i = 0; i < numCandidates; i++) {
+					int lit = candidates[i];
+					if (model[Math.abs(lit)] == lit > 0) {
+						candidates[kept++] = lit;
+					}
+				}
+				filtered += numCandidates - kept;
+				numCandidates = kept;
+			} else {
+				/* Busqueda interrumpida */
+				return null;
+			}
+		}
+
+		/* Ordena por variable */
+		int[] byVariable = new int[numVars + 1];
+		for (int i = 0; i < size; i++) {
+			byVariable[Math.abs(backbone[i])] = backbone[i];
+		}
+		int[] result = new int[size];
+		int n = 0;
+		for (int v = 1; v <= numVars; v++) {
+			if (byVariable[v] != 0) {
+				result[n++] = byVariable[v];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return numero de llamadas al resolutor en el ultimo calculo.
+	 */
+	public long getSolverCalls() {
+		return solverCalls;
+	}
+
+	/**
+	 * @return numero de candidatos descartados por los modelos encontrados.
+	 */
+	public long getFilteredCandidates() {
+		return filtered;
+	}
+}
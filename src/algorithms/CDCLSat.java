@@ -0,0 +1,1490 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+
+import utils.*;
+
+import static utils.DimacsFormula.index;
+
+/**
+ * Resolutor sistematico con aprendizaje de clausulas dirigido por
+ * conflictos (CDCL), sobre literales enteros como los de {@link DimacsFormula}.
+ *
+ * Usa dos literales vigilados por clausula para la propagacion unitaria,
+ * aprendizaje con el primer punto de implicacion unico (1UIP) y vuelta
+ * atras no cronologica, heuristica de actividad de variables (VSIDS) con
+ * memoria de polaridad, reinicios segun la serie de Luby y borrado periodico
+ * de las clausulas aprendidas menos utiles. El orden de variables, la
+ * polaridad inicial, la semilla y la frecuencia de reinicios se fijan con
+ * una {@link Config}, lo que permite lanzar varias busquedas distintas sobre
+ * la misma formula.
+ *
+ * El resolutor es incremental: entre llamadas a solve() se pueden anadir
+ * clausulas, y se conservan las aprendidas, la actividad de las variables y
+ * los literales vigilados. Cada llamada puede recibir hipotesis, literales
+ * que se toman como ciertos solo durante esa llamada; si no hay modelo que
+ * las cumpla, {@link #getFailedAssumptions()} devuelve un subconjunto de
+ * ellas que ya es incompatible con la formula.
+ *
+ * La busqueda se puede cancelar desde otro hilo con {@link #interrupt()} o
+ * interrumpiendo el hilo que la ejecuta.
+ */
+public class CDCLSat {
+
+	/**
+	 * Configuracion de la busqueda.
+	 */
+	public static class Config {
+
+		/** Orden inicial de las variables */
+		public enum Order {
+			/* Actividad (VSIDS), empezando en el orden de entrada */
+			ACTIVITY,
+			/* Orden de entrada fijo, sin actividad */
+			INPUT,
+			/* Actividad, empezando en un orden aleatorio */
+			RANDOM
+		}
+
+		/** Polaridad de una variable la primera vez que se decide */
+		public enum Polarity {
+			FALSE, TRUE, RANDOM
+		}
+
+		private String name;
+		private Order order;
+		private Polarity polarity;
+		private long seed;
+		private int restartBase;
+		private double randomDecisions;
+
+		/**
+		 * @param name
+		 *            nombre con el que se informa de la configuracion.
+		 * @param order
+		 *            orden de las variables.
+		 * @param polarity
+		 *            polaridad inicial de las decisiones.
+		 * @param seed
+		 *            semilla de los generadores aleatorios.
+		 * @param restartBase
+		 *            conflictos entre reinicios, multiplicados por la serie
+		 *            de Luby.
+		 * @param randomDecisions
+		 *            proporcion de decisiones sobre una variable aleatoria.
+		 */
+		public Config(String name, Order order, Polarity polarity, long seed,
+				int restartBase, double randomDecisions) {
+			this.name = name;
+			this.order = order;
+			this.polarity = polarity;
+			this.seed = seed;
+			this.restartBase = restartBase;
+			this.randomDecisions = randomDecisions;
+		}
+
+		/**
+		 * Configuracion por defecto.
+		 */
+		public Config() {
+			this("default", Order.ACTIVITY, Polarity.FALSE, 0, 100, 0);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Order getOrder() {
+			return order;
+		}
+
+		public Polarity getPolarity() {
+			return polarity;
+		}
+
+		public long getSeed() {
+			return seed;
+		}
+
+		public int getRestartBase() {
+			return restartBase;
+		}
+
+		public double getRandomDecisions() {
+			return randomDecisions;
+		}
+
+		@Override
+		public String toString() {
+			return name + " (orden=" + order + ", polaridad=" + polarity + ", semilla=" + seed
+					+ ", reinicios=" + restartBase + ", aleatorias=" + randomDecisions + ")";
+		}
+	}
+
+	/*
+	 * Clausula del resolutor. Los dos primeros literales son los vigilados;
+	 * si la clausula es razon de una asignacion, el literal implicado esta
+	 * en la posicion 0.
+	 */
+	static final class ClauseRef {
+		int[] lits;
+		boolean learnt;
+		boolean deleted = false;
+		int lbd = 0;
+		double activity = 0;
+
+		ClauseRef(int[] lits, boolean learnt) {
+			this.lits = lits;
+			this.learnt = learnt;
+		}
+	}
+
+	/* Restriccion de cardinalidad: a lo sumo bound literales ciertos */
+	private static final class AtMost {
+		final int[] lits;
+		final int bound;
+		/* Literales de la restriccion que son ciertos ahora */
+		int count = 0;
+
+		AtMost(int[] lits, int bound) {
+			this.lits = lits;
+			this.bound = bound;
+		}
+	}
+
+	/* Lista de clausulas que vigilan un literal */
+	private static final class WatchList {
+		ClauseRef[] data = new ClauseRef[4];
+		int size = 0;
+
+		void add(ClauseRef c) {
+			if (size == data.length) {
+				data = Arrays.copyOf(data, size * 2);
+			}
+			data[size++] = c;
+		}
+	}
+
+	private static final double VAR_DECAY = 0.95;
+	private static final double CLAUSE_DECAY = 0.999;
+	private static final double RESCALE_LIMIT = 1e100;
+
+	private Config config;
+	private Random random;
+
+	private int numVars = 0;
+
+	/* Por variable: valor (0 sin asignar, 1 cierto, -1 falso), nivel y razon */
+	private byte[] values = new byte[1];
+	private int[] levels = new int[1];
+	private ClauseRef[] reasons = new ClauseRef[1];
+	private boolean[] phases = new boolean[1];
+	private boolean[] seen = new boolean[1];
+
+	/* Literales vigilados, indexados por index(lit) */
+	private WatchList[] watches = new WatchList[2];
+
+	/* Asignaciones en orden, y comienzo de cada nivel de decision */
+	private int[] trail = new int[1];
+	private int trailSize = 0;
+	private int qhead = 0;
+	private int[] trailLim = new int[1];
+	private int numLevels = 0;
+
+	private ArrayList<ClauseRef> clauses = new ArrayList<ClauseRef>();
+	private ArrayList<ClauseRef> learnts = new ArrayList<ClauseRef>();
+	private double maxLearnts = 0;
+
+	/* Actividad de las variables, con un monticulo para elegir la mayor */
+	private double[] activity = new double[1];
+	private double varInc = 1;
+	private double clauseInc = 1;
+	private int[] heap = new int[1];
+	private int heapSize = 0;
+	private int[] heapIndex = new int[1];
+
+	private boolean ok = true;
+	private volatile boolean interrupted = false;
+	private long conflictBudget = -1;
+	private ClauseExchange.Port exchange = null;
+	private long conflictLimit = Long.MAX_VALUE;
+	private boolean[] model = null;
+
+	/* Restricciones de cardinalidad en las que aparece cada literal */
+	private AtMost[][] atMostOccurrences = null;
+	private int[] atMostOccurrenceCount = null;
+
+	/*
+	 * Restricciones de paridad: una fila de bits por restriccion, con una
+	 * columna por variable que aparece en alguna, y su paridad
+	 */
+	private int[] xorColumn = new int[1];
+	private int[] xorVariable = new int[1];
+	private int numXorColumns = 0;
+	private ArrayList<long[]> xorRows = new ArrayList<long[]>();
+	private ArrayList<Boolean> xorParity = new ArrayList<Boolean>();
+	/*
+	 * Matriz eliminada que se mantiene entre propagaciones: el pivote de
+	 * cada fila es una columna sin valor que no aparece en ninguna otra
+	 * fila, y las filas sin pivote solo tienen columnas con valor. Las
+	 * asignaciones del trail hasta xorHead ya estan tenidas en cuenta
+	 */
+	private long[][] xorWork = new long[0][];
+	private boolean[] xorWorkParity = new boolean[0];
+	private int[] xorRowPivot = new int[0];
+	private int[] xorPivotRow = new int[0];
+	private boolean[] xorAssigned = new boolean[0];
+	private int xorHead = 0;
+	/* Hay filas o columnas nuevas y la matriz se vuelve a eliminar entera */
+	private boolean xorRebuild = false;
+	/* Alguna variable de las filas ha cambiado desde la ultima comprobacion */
+	private boolean xorDirty = false;
+	private DratWriter proof = null;
+	private int[] modelDecisions = null;
+
+	/* Hipotesis de la llamada en curso: la i-esima se decide en el nivel i+1 */
+	private int[] assumptions = new int[0];
+	private int[] failedAssumptions = null;
+
+	private long conflicts = 0;
+	private long decisions = 0;
+	private long propagations = 0;
+
+	/**
+	 * Crea un resolutor con la configuracion por defecto.
+	 */
+	public CDCLSat() {
+		this(new Config());
+	}
+
+	public CDCLSat(Config config) {
+		this.config = config;
+		this.random = new Random(config.getSeed());
+	}
+
+	/**
+	 * Comprueba si la sentencia es satisfacible.
+	 */
+	public boolean isSatisfiable(Sentence s) {
+		DimacsFormula formula = new DimacsFormula(s.getClauses());
+		addFormula(formula);
+		return Boolean.TRUE.equals(solve());
+	}
+
+	/**
+	 * Anade todas las clausulas de la formula.
+	 */
+	public boolean addFormula(DimacsFormula formula) {
+		ensureVariables(formula.getNumVariables());
+		for (int[] clause : formula.getClauses()) {
+			if (!addClause(clause)) {
+				return false;
+			}
+		}
+		for (XorConstraint constraint : formula.getXorConstraints()) {
+			int[] vars = new int[constraint.getVariables().size()];
+			int i = 0;
+			for (PropositionSymbol symbol : constraint.getVariables()) {
+				vars[i++] = formula.getVariable(symbol);
+			}
+			if (!addXor(vars, constraint.getParity())) {
+				return false;
+			}
+		}
+		for (CardinalityConstraint constraint : formula.getCardinalityConstraints()) {
+			int[] lits = new int[constraint.getLiterals().size()];
+			int i = 0;
+			for (Literal l : constraint.getLiterals()) {
+				lits[i++] = formula.toLiteral(l);
+			}
+			if (!addAtMost(lits, constraint.getBound())) {
+				return false;
+			}
+		}
+		return ok;
+	}
+
+	/**
+	 * Anade una clausula. Las clausulas se simplifican con las asignaciones
+	 * del nivel 0: se eliminan los literales falsos, y se ignoran las
+	 * clausulas ya satisfechas y las tautologias.
+	 *
+	 * @return false si la formula ya es insatisfacible.
+	 */
+	public boolean addClause(int... literals) {
+		return addClause(literals, false);
+	}
+
+	private boolean addClause(int[] literals, boolean learnt) {
+		if (!ok) {
+			return false;
+		}
+		cancelUntil(0);
+
+		int[] lits = literals.clone();
+		for (int lit : lits) {
+			ensureVariables(Math.abs(lit));
+		}
+		/* Ordena por variable para detectar repetidos y tautologias */
+		sortByVariable(lits);
+		int size = 0;
+		for (int i = 0; i < lits.length; i++) {
+			int lit = lits[i];
+			if (value(lit) == 1 || (i > 0 && lit == -lits[i - 1])) {
+				return true;
+			}
+			if (value(lit) == 0 && (i == 0 || lit != lits[i - 1])) {
+				lits[size++] = lit;
+			}
+		}
+
+		/* La clausula simplificada se deduce de la original y de las unitarias */
+		if (proof != null && (learnt || size < literals.length)) {
+			proof.add(lits, size);
+		}
+		if (size == 0) {
+			ok = false;
+		} else if (size == 1) {
+			assign(lits[0], null);
+			ok = propagate() == null;
+			if (!ok) {
+				logEmptyClause();
+			}
+		} else {
+			ClauseRef c = new ClauseRef(Arrays.copyOf(lits, size), learnt);
+			if (learnt) {
+				c.lbd = size;
+				learnts.add(c);
+			} else {
+				clauses.add(c);
+			}
+			attach(c);
+		}
+		return ok;
+	}
+
+	/**
+	 * Anade la restriccion de que a lo sumo bound de los literales (distintos)
+	 * sean ciertos. No se traduce a clausulas: se propaga con un contador de
+	 * literales ciertos, y cuando llega a bound el resto se hacen falsos. Las
+	 * razones de esas asignaciones se construyen solo cuando hacen falta.
+	 *
+	 * @return false si la formula ya es insatisfacible.
+	 */
+	public boolean addAtMost(int[] literals, int bound) {
+		if (!ok) {
+			return false;
+		}
+		cancelUntil(0);
+		if (bound >= literals.length) {
+			return true;
+		}
+		if (bound < 0) {
+			ok = false;
+			logEmptyClause();
+			return false;
+		}
+		for (int lit : literals) {
+			ensureVariables(Math.abs(lit));
+		}
+		if (atMostOccurrences == null) {
+			atMostOccurrences = new AtMost[watches.length][];
+			atMostOccurrenceCount = new int[watches.length];
+		}
+		AtMost constraint = new AtMost(literals.clone(), bound);
+		for (int lit : constraint.lits) {
+			int i = index(lit);
+			if (atMostOccurrences[i] == null) {
+				atMostOccurrences[i] = new AtMost[2];
+			} else if (atMostOccurrenceCount[i] == atMostOccurrences[i].length) {
+				atMostOccurrences[i] = Arrays.copyOf(atMostOccurrences[i], 2 * atMostOccurrenceCount[i]);
+			}
+			atMostOccurrences[i][atMostOccurrenceCount[i]++] = constraint;
+			if (value(lit) == 1) {
+				constraint.count++;
+			}
+		}
+		ClauseRef conflict = propagate();
+		if (conflict == null) {
+			conflict = propagateAtMost(constraint);
+		}
+		if (conflict == null) {
+			conflict = propagate();
+		}
+		ok = conflict == null;
+		if (!ok) {
+			logEmptyClause();
+		}
+		return ok;
+	}
+
+	/**
+	 * Anade la restriccion de que la suma modulo 2 de las variables sea
+	 * parity. Las restricciones de paridad forman una matriz eliminada por
+	 * Gauss-Jordan, que se actualiza con cada asignacion y vuelta atras y de
+	 * la que salen tanto asignaciones como conflictos.
+	 *
+	 * @return false si la formula ya es insatisfacible.
+	 */
+	public boolean addXor(int[] variables, boolean parity) {
+		if (!ok) {
+			return false;
+		}
+		cancelUntil(0);
+		for (int v : variables) {
+			ensureVariables(v);
+			if (xorColumn[v] < 0) {
+				if (numXorColumns == xorVariable.length) {
+					xorVariable = Arrays.copyOf(xorVariable, 2 * numXorColumns);
+				}
+				xorVariable[numXorColumns] = v;
+				xorColumn[v] = numXorColumns++;
+			}
+		}
+		long[] row = new long[(numXorColumns + 63) >>> 6];
+		for (int v : variables) {
+			/* Una variable repetida se anula */
+			row[xorColumn[v] >>> 6] ^= 1L << xorColumn[v];
+		}
+		xorRows.add(row);
+		xorParity.add(parity);
+		xorRebuild = true;
+		xorDirty = true;
+		ok = propagate() == null;
+		if (!ok) {
+			logEmptyClause();
+		}
+		return ok;
+	}
+
+	/**
+	 * Busca un modelo de las clausulas anadidas en el que se cumplan las
+	 * hipotesis indicadas. Las hipotesis solo valen para esta llamada.
+	 *
+	 * @return true si hay modelo, false si no lo hay, o null si se ha
+	 *         interrumpido la busqueda antes de saberlo.
+	 */
+	public Boolean solve(int... assumptions) {
+		model = null;
+		failedAssumptions = null;
+		if (!ok) {
+			failedAssumptions = new int[0];
+			return false;
+		}
+		for (int lit : assumptions) {
+			ensureVariables(Math.abs(lit));
+		}
+		this.assumptions = assumptions.clone();
+		cancelUntil(0);
+		if (propagate() != null) {
+			ok = false;
+			logEmptyClause();
+			failedAssumptions = new int[0];
+			return false;
+		}
+		maxLearnts = Math.max(clauses.size() / 3.0, 2000);
+		conflictLimit = conflictBudget < 0 ? Long.MAX_VALUE : conflicts + conflictBudget;
+
+		for (int restart = 0; ; restart++) {
+			/* Los reinicios vuelven al nivel 0: se importan las clausulas compartidas */
+			if (exchange != null && !importShared()) {
+				return false;
+			}
+			int budget = luby(restart) * config.getRestartBase();
+			Boolean status = search(budget);
+			if (status != null) {
+				cancelUntil(0);
+				return status;
+			}
+			if (mustStop()) {
+				/* La interrupcion solo vale para esta llamada */
+				interrupted = false;
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Tras una llamada a solve() que devuelve false, hipotesis cuya
+	 * conjuncion ya es incompatible con la formula. Esta vacio si la formula
+	 * es insatisfacible por si sola.
+	 *
+	 * @return el subconjunto de hipotesis, o null si la ultima llamada no
+	 *         devolvio false.
+	 */
+	public int[] getFailedAssumptions() {
+		return failedAssumptions;
+	}
+
+	/**
+	 * @return true si ya se sabe que las clausulas anadidas son
+	 *         insatisfacibles sin ninguna hipotesis.
+	 */
+	public boolean isInconsistent() {
+		return !ok;
+	}
+
+	/**
+	 * Conecta el resolutor a un canal de clausulas compartidas: publica las
+	 * clausulas aprendidas que el canal admite e importa las de los demas
+	 * en cada reinicio.
+	 */
+	public void setClauseExchange(ClauseExchange.Port exchange) {
+		this.exchange = exchange;
+	}
+
+	/**
+	 * Registra en la prueba las clausulas aprendidas y borradas, y la
+	 * clausula vacia si la formula resulta insatisfacible, para certificarlo
+	 * con {@link DratChecker}. Debe indicarse antes de anadir clausulas, y la
+	 * prueba solo es valida respecto a las clausulas anadidas si no se usan
+	 * hipotesis, restricciones de cardinalidad o de paridad ni clausulas
+	 * compartidas con otros resolutores.
+	 */
+	public void setProof(DratWriter proof) {
+		this.proof = proof;
+	}
+
+	/**
+	 * Limita el numero de conflictos de cada llamada a solve(); al
+	 * alcanzarlo, solve() devuelve null. Un valor negativo quita el limite.
+	 */
+	public void setConflictBudget(long conflictBudget) {
+		this.conflictBudget = conflictBudget;
+	}
+
+	/**
+	 * Hace que la proxima decision sobre la variable del literal lo tome
+	 * como cierto. Despues, la memoria de polaridad sigue como siempre.
+	 */
+	public void setPhase(int lit) {
+		ensureVariables(Math.abs(lit));
+		phases[Math.abs(lit)] = lit > 0;
+	}
+
+	/**
+	 * Pide que la busqueda en curso termine lo antes posible. Si no hay
+	 * ninguna, se detiene la siguiente llamada a solve(); las posteriores
+	 * buscan con normalidad.
+	 */
+	public void interrupt() {
+		interrupted = true;
+	}
+
+	/**
+	 * @return el ultimo modelo encontrado, indexado por variable, o null.
+	 */
+	public boolean[] getModel() {
+		return model;
+	}
+
+	/**
+	 * @return los literales decididos al encontrar el ultimo modelo, o null.
+	 *         Junto con la formula implican por propagacion el resto del
+	 *         modelo, asi que su negacion es una clausula que excluye ese
+	 *         modelo y ningun otro.
+	 */
+	public int[] getModelDecisions() {
+		return modelDecisions;
+	}
+
+	public int getNumVariables() {
+		return numVars;
+	}
+
+	public Config getConfig() {
+		return config;
+	}
+
+	public long getConflicts() {
+		return conflicts;
+	}
+
+	public long getDecisions() {
+		return decisions;
+	}
+
+	public long getPropagations() {
+		return propagations;
+	}
+
+	//
+	// BUSQUEDA
+	//
+
+	/*
+	 * Busca hasta encontrar un modelo, demostrar que no lo hay o alcanzar el
+	 * numero de conflictos indicado, en cuyo caso reinicia y devuelve null
+	 */
+	private Boolean search(int conflictBudget) {
+		int conflictsHere = 0;
+		while (true) {
+			if (mustStop()) {
+				cancelUntil(0);
+				return null;
+			}
+			ClauseRef conflict = propagate();
+			if (conflict != null) {
+				conflicts++;
+				conflictsHere++;
+				if (numLevels == 0) {
+					ok = false;
+					logEmptyClause();
+					failedAssumptions = new int[0];
+					return false;
+				}
+				int[] learnt = analyze(conflict);
+				int lbd = computeLbd(learnt);
+				if (proof != null) {
+					proof.add(learnt, learnt.length);
+				}
+				if (exchange != null && exchange.accepts(learnt.length, lbd)) {
+					exchange.export(learnt.clone());
+				}
+				cancelUntil(learnt.length == 1 ? 0 : levels[Math.abs(learnt[1])]);
+				if (learnt.length == 1) {
+					assign(learnt[0], null);
+				} else {
+					ClauseRef c = new ClauseRef(learnt, true);
+					c.lbd = lbd;
+					learnts.add(c);
+					attach(c);
+					bumpClause(c);
+					assign(learnt[0], c);
+				}
+				varInc /= VAR_DECAY;
+				clauseInc /= CLAUSE_DECAY;
+			} else {
+				if (conflictsHere >= conflictBudget) {
+					cancelUntil(0);
+					return null;
+				}
+				if (learnts.size() - trailSize >= maxLearnts) {
+					reduceLearnts();
+				}
+				/* Las hipotesis se deciden antes que nada, una por nivel */
+				int next = 0;
+				while (next == 0 && numLevels < assumptions.length) {
+					int p = assumptions[numLevels];
+					if (value(p) == 1) {
+						newDecisionLevel();
+					} else if (value(p) == -1) {
+						analyzeFinal(p);
+						return false;
+					} else {
+						next = p;
+					}
+				}
+				if (next == 0) {
+					next = pickBranchLiteral();
+				}
+				if (next == 0) {
+					/* Todas las variables asignadas sin conflicto */
+					model = new boolean[numVars + 1];
+					for (int v = 1; v <= numVars; v++) {
+						model[v] = values[v] > 0;
+					}
+					recordDecisions();
+					cancelUntil(0);
+					return true;
+				}
+				decisions++;
+				newDecisionLevel();
+				assign(next, null);
+			}
+		}
+	}
+
+	private void logEmptyClause() {
+		if (proof != null) {
+			proof.add(new int[0], 0);
+		}
+	}
+
+	/*
+	 * Guarda el literal de decision de cada nivel. Los niveles de hipotesis
+	 * que ya eran ciertas no tienen ninguno
+	 */
+	private void recordDecisions() {
+		int[] lits = new int[numLevels];
+		int n = 0;
+		for (int level = 0; level < numLevels; level++) {
+			int end = level + 1 < numLevels ? trailLim[level + 1] : trailSize;
+			if (trailLim[level] < end) {
+				lits[n++] = trail[trailLim[level]];
+			}
+		}
+		modelDecisions = Arrays.copyOf(lits, n);
+	}
+
+	/*
+	 * Anade como aprendidas las clausulas publicadas por otros resolutores
+	 */
+	private boolean importShared() {
+		ArrayList<int[]> shared = new ArrayList<int[]>();
+		exchange.collect(shared);
+		for (int[] clause : shared) {
+			if (!addClause(clause, true)) {
+				return false;
+			}
+		}
+		return ok;
+	}
+
+	/*
+	 * Propaga las clausulas y restricciones hasta el punto fijo y, si ha
+	 * cambiado el valor de alguna variable de las restricciones de paridad,
+	 * actualiza la eliminacion de Gauss-Jordan, repitiendo mientras deduzca
+	 * algo. Devuelve la clausula en conflicto, o null si no lo hay
+	 */
+	private ClauseRef propagate() {
+		while (true) {
+			ClauseRef conflict = propagateWatches();
+			if (conflict != null || !xorDirty) {
+				return conflict;
+			}
+			conflict = propagateXor();
+			if (conflict != null) {
+				qhead = trailSize;
+				return conflict;
+			}
+			if (qhead == trailSize) {
+				return null;
+			}
+		}
+	}
+
+	/*
+	 * Propagacion unitaria con literales vigilados. Devuelve la clausula en
+	 * conflicto, o null si no lo hay
+	 */
+	private ClauseRef propagateWatches() {
+		ClauseRef conflict = null;
+		while (qhead < trailSize && conflict == null) {
+			int falseLit = -trail[qhead++];
+			propagations++;
+			WatchList ws = watches[index(falseLit)];
+			ClauseRef[] data = ws.data;
+			int n = ws.size;
+			int i = 0;
+			int j = 0;
+			while (i < n) {
+				ClauseRef c = data[i++];
+				int[] lits = c.lits;
+				if (lits[0] == falseLit) {
+					lits[0] = lits[1];
+					lits[1] = falseLit;
+				}
+				int first = lits[0];
+				if (value(first) == 1) {
+					data[j++] = c;
+					continue;
+				}
+
+				/* Busca otro literal no falso que vigilar */
+				boolean moved = false;
+				for (int k = 2; k < lits.length; k++) {
+					if (value(lits[k]) != -1) {
+						lits[1] = lits[k];
+						lits[k] = falseLit;
+						watches[index(lits[1])].add(c);
+						moved = true;
+						break;
+					}
+				}
+				if (moved) {
+					continue;
+				}
+
+				data[j++] = c;
+				if (value(first) == -1) {
+					conflict = c;
+					qhead = trailSize;
+					while (i < n) {
+						data[j++] = data[i++];
+					}
+				} else {
+					assign(first, c);
+				}
+			}
+			ws.size = j;
+
+			if (conflict == null && atMostOccurrences != null) {
+				int ti = index(-falseLit);
+				AtMost[] constraints = atMostOccurrences[ti];
+				for (int k = 0; k < atMostOccurrenceCount[ti] && conflict == null; k++) {
+					conflict = propagateAtMost(constraints[k]);
+				}
+				if (conflict != null) {
+					qhead = trailSize;
+				}
+			}
+		}
+		return conflict;
+	}
+
+	/*
+	 * Eliminacion de Gauss-Jordan sobre las filas de paridad, tomando como
+	 * pivotes solo columnas sin valor. La matriz no se rehace en cada punto
+	 * fijo: cada variable asignada desde la ultima vez solo obliga a buscar
+	 * otro pivote para la fila de la que era pivote. Las filas que quedan
+	 * sin pivote solo tienen variables con valor: si su paridad no cuadra,
+	 * la fila es un conflicto. Las filas cuyo pivote es su unica variable
+	 * sin valor la implican. Como cada fila resultante es suma de filas
+	 * originales, es una restriccion valida, y la razon es la clausula que
+	 * dice que alguna de sus variables con valor deberia tener el contrario
+	 */
+	private ClauseRef propagateXor() {
+		xorDirty = false;
+		if (xorRebuild) {
+			rebuildXor();
+		}
+		for (; xorHead < trailSize; xorHead++) {
+			int col = xorColumn[Math.abs(trail[xorHead])];
+			if (col >= 0) {
+				assignXorColumn(col);
+			}
+		}
+
+		int rows = xorRows.size();
+		for (int r = 0; r < rows; r++) {
+			long[] row = xorWork[r];
+			int free = 0;
+			int last = 0;
+			boolean others = false;
+			for (int k = 0; k < row.length; k++) {
+				long bits = row[k];
+				while (bits != 0) {
+					int v = xorVariable[(k << 6) + Long.numberOfTrailingZeros(bits)];
+					bits &= bits - 1;
+					if (values[v] == 0) {
+						free++;
+						last = v;
+					} else if (values[v] == 1) {
+						others = !others;
+					}
+				}
+			}
+			if (free == 0 && others != xorWorkParity[r]) {
+				/* Fila sin variables libres cuya paridad no cuadra */
+				return new ClauseRef(xorReason(row, 0), false);
+			}
+			if (free == 1) {
+				int lit = xorWorkParity[r] != others ? last : -last;
+				assign(lit, new ClauseRef(xorReason(row, lit), false));
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Elimina la matriz entera a partir de las filas originales, con todas
+	 * las columnas sin valor. Las asignaciones del trail se aplican despues
+	 * como cualquier otra
+	 */
+	private void rebuildXor() {
+		xorRebuild = false;
+		int rows = xorRows.size();
+		int words = (numXorColumns + 63) >>> 6;
+		xorWork = new long[rows][words];
+		xorWorkParity = new boolean[rows];
+		xorRowPivot = new int[rows];
+		xorPivotRow = new int[numXorColumns];
+		xorAssigned = new boolean[numXorColumns];
+		Arrays.fill(xorRowPivot, -1);
+		Arrays.fill(xorPivotRow, -1);
+		for (int r = 0; r < rows; r++) {
+			long[] row = xorRows.get(r);
+			System.arraycopy(row, 0, xorWork[r], 0, row.length);
+			xorWorkParity[r] = xorParity.get(r);
+		}
+		for (int r = 0; r < rows; r++) {
+			int col = freeXorColumn(xorWork[r]);
+			if (col >= 0) {
+				setXorPivot(r, col);
+			}
+		}
+		xorHead = 0;
+	}
+
+	/*
+	 * La columna deja de estar libre: si era un pivote, su fila pasa a otra
+	 * columna libre, que no puede ser pivote de otra fila
+	 */
+	private void assignXorColumn(int col) {
+		xorAssigned[col] = true;
+		int r = xorPivotRow[col];
+		if (r < 0) {
+			return;
+		}
+		xorPivotRow[col] = -1;
+		xorRowPivot[r] = -1;
+		int other = freeXorColumn(xorWork[r]);
+		if (other >= 0) {
+			setXorPivot(r, other);
+		}
+	}
+
+	/*
+	 * La columna vuelve a estar libre: la primera fila sin pivote que la
+	 * contiene la toma como pivote
+	 */
+	private void unassignXorColumn(int col) {
+		xorAssigned[col] = false;
+		int w = col >>> 6;
+		long bit = 1L << col;
+		for (int r = 0; r < xorRows.size(); r++) {
+			if (xorRowPivot[r] < 0 && (xorWork[r][w] & bit) != 0) {
+				setXorPivot(r, col);
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Toma la columna como pivote de la fila y la quita de las demas filas
+	 * sumandoles esta. La fila no tiene los pivotes de las demas, asi que
+	 * los conservan
+	 */
+	private void setXorPivot(int r, int col) {
+		xorRowPivot[r] = col;
+		xorPivotRow[col] = r;
+		int w = col >>> 6;
+		long bit = 1L << col;
+		long[] pivot = xorWork[r];
+		for (int o = 0; o < xorRows.size(); o++) {
+			if (o != r && (xorWork[o][w] & bit) != 0) {
+				long[] other = xorWork[o];
+				for (int k = 0; k < pivot.length; k++) {
+					other[k] ^= pivot[k];
+				}
+				xorWorkParity[o] ^= xorWorkParity[r];
+			}
+		}
+	}
+
+	/*
+	 * Primera columna de la fila cuya asignacion no esta en la matriz, o -1
+	 */
+	private int freeXorColumn(long[] row) {
+		for (int k = 0; k < row.length; k++) {
+			long bits = row[k];
+			while (bits != 0) {
+				int col = (k << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				if (!xorAssigned[col]) {
+					return col;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Clausula con el literal implicado (0 si es un conflicto) y, por cada
+	 * otra variable de la fila, el literal que ahora es falso
+	 */
+	private int[] xorReason(long[] row, int implied) {
+		int[] lits = new int[numXorColumns + 1];
+		int n = 0;
+		if (implied != 0) {
+			lits[n++] = implied;
+		}
+		for (int k = 0; k < row.length; k++) {
+			long bits = row[k];
+			while (bits != 0) {
+				int v = xorVariable[(k << 6) + Long.numberOfTrailingZeros(bits)];
+				bits &= bits - 1;
+				if (v != Math.abs(implied)) {
+					lits[n++] = values[v] == 1 ? -v : v;
+				}
+			}
+		}
+		return Arrays.copyOf(lits, n);
+	}
+
+	/*
+	 * Si la restriccion tiene bound literales ciertos, hace falsos los que
+	 * no tienen valor, con razon (-l + -c1 + ... + -ck) sobre los ciertos.
+	 * Si tiene mas, devuelve como conflicto la negacion de los ciertos
+	 */
+	private ClauseRef propagateAtMost(AtMost constraint) {
+		if (constraint.count < constraint.bound) {
+			return null;
+		}
+		int[] reason = new int[constraint.count + 1];
+		int n = 1;
+		for (int lit : constraint.lits) {
+			if (value(lit) == 1) {
+				reason[n++] = -lit;
+			}
+		}
+		if (constraint.count > constraint.bound) {
+			return new ClauseRef(Arrays.copyOfRange(reason, 1, n), false);
+		}
+		for (int lit : constraint.lits) {
+			if (value(lit) == 0) {
+				int[] lits = reason.clone();
+				lits[0] = -lit;
+				assign(-lit, new ClauseRef(lits, false));
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Analiza un conflicto y devuelve la clausula aprendida en el primer
+	 * punto de implicacion unico. El literal asertivo queda en la posicion
+	 * 0 y el de mayor nivel de los restantes en la posicion 1
+	 */
+	private int[] analyze(ClauseRef conflict) {
+		int[] learnt = new int[8];
+		int size = 1;
+		int pathCount = 0;
+		int p = 0;
+		int index = trailSize - 1;
+		ClauseRef c = conflict;
+
+		do {
+			if (c.learnt) {
+				bumpClause(c);
+			}
+			for (int lit : c.lits) {
+				if (lit == p) {
+					continue;
+				}
+				int v = Math.abs(lit);
+				if (!seen[v] && levels[v] > 0) {
+					bumpVariable(v);
+					seen[v] = true;
+					if (levels[v] >= numLevels) {
+						pathCount++;
+					} else {
+						if (size == learnt.length) {
+							learnt = Arrays.copyOf(learnt, size * 2);
+						}
+						learnt[size++] = lit;
+					}
+				}
+			}
+			/* Siguiente literal del nivel actual a resolver */
+			while (!seen[Math.abs(trail[index--])]) {
+			}
+			p = trail[index + 1];
+			c = reasons[Math.abs(p)];
+			seen[Math.abs(p)] = false;
+			pathCount--;
+		} while (pathCount > 0);
+		learnt[0] = -p;
+
+		/*
+		 * Minimizacion: sobra un literal si todos los de su razon ya estan
+		 * en la clausula o son del nivel 0
+		 */
+		int[] toClear = Arrays.copyOf(learnt, size);
+		int kept = 1;
+		for (int i = 1; i < size; i++) {
+			ClauseRef reason = reasons[Math.abs(learnt[i])];
+			if (reason == null || !isRedundant(reason, learnt[i])) {
+				learnt[kept++] = learnt[i];
+			}
+		}
+		for (int i = 1; i < toClear.length; i++) {
+			seen[Math.abs(toClear[i])] = false;
+		}
+
+		/* El literal de mayor nivel pasa a ser el segundo vigilado */
+		int max = 1;
+		for (int i = 2; i < kept; i++) {
+			if (levels[Math.abs(learnt[i])] > levels[Math.abs(learnt[max])]) {
+				max = i;
+			}
+		}
+		if (kept > 1) {
+			int tmp = learnt[1];
+			learnt[1] = learnt[max];
+			learnt[max] = tmp;
+		}
+		return Arrays.copyOf(learnt, kept);
+	}
+
+	/*
+	 * La hipotesis p ha resultado falsa: recorre hacia atras sus
+	 * implicaciones para quedarse con las hipotesis de las que depende
+	 */
+	private void analyzeFinal(int p) {
+		ArrayList<Integer> failed = new ArrayList<Integer>();
+		failed.add(p);
+		if (levels[Math.abs(p)] > 0) {
+			seen[Math.abs(p)] = true;
+			for (int i = trailSize - 1; i >= trailLim[0]; i--) {
+				int v = Math.abs(trail[i]);
+				if (!seen[v]) {
+					continue;
+				}
+				if (reasons[v] == null) {
+					/* Solo las hipotesis se deciden sin razon en estos niveles */
+					failed.add(trail[i]);
+				} else {
+					for (int lit : reasons[v].lits) {
+						if (levels[Math.abs(lit)] > 0) {
+							seen[Math.abs(lit)] = true;
+						}
+					}
+				}
+				seen[v] = false;
+			}
+		}
+		failedAssumptions = new int[failed.size()];
+		for (int i = 0; i < failedAssumptions.length; i++) {
+			failedAssumptions[i] = failed.get(i);
+		}
+	}
+
+	private boolean isRedundant(ClauseRef reason, int lit) {
+		for (int other : reason.lits) {
+			int v = Math.abs(other);
+			if (other != -lit && !seen[v] && levels[v] > 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/* Numero de niveles de decision distintos de la clausula (LBD) */
+	private int computeLbd(int[] lits) {
+		int[] distinct = new int[lits.length];
+		int count = 0;
+		for (int lit : lits) {
+			int level = levels[Math.abs(lit)];
+			boolean found = false;
+			for (int i = 0; i < count && !found; i++) {
+				found = distinct[i] == level;
+			}
+			if (!found) {
+				distinct[count++] = level;
+			}
+		}
+		return count;
+	}
+
+	private int pickBranchLiteral() {
+		int v = 0;
+		if (config.getRandomDecisions() > 0 && heapSize > 0
+				&& random.nextDouble() < config.getRandomDecisions()) {
+			v = heap[random.nextInt(heapSize)];
+			if (values[v] != 0) {
+				v = 0;
+			}
+		}
+		while (v == 0 && heapSize > 0) {
+			int top = heapRemoveMax();
+			if (values[top] == 0) {
+				v = top;
+			}
+		}
+		if (v == 0) {
+			return 0;
+		}
+		return phases[v] ? v : -v;
+	}
+
+	/*
+	 * Elimina la mitad de las clausulas aprendidas, empezando por las de
+	 * mayor LBD y menor actividad. Las binarias, las de LBD 2 y las que son
+	 * razon de alguna asignacion se conservan
+	 */
+	private void reduceLearnts() {
+		Collections.sort(learnts, new Comparator<ClauseRef>() {
+			public int compare(ClauseRef a, ClauseRef b) {
+				if (a.lbd != b.lbd) {
+					return b.lbd - a.lbd;
+				}
+				return Double.compare(a.activity, b.activity);
+			}
+		});
+		int limit = learnts.size() / 2;
+		ArrayList<ClauseRef> kept = new ArrayList<ClauseRef>(learnts.size());
+		for (int i = 0; i < learnts.size(); i++) {
+			ClauseRef c = learnts.get(i);
+			if (i < limit && c.lits.length > 2 && c.lbd > 2 && !isLocked(c)) {
+				c.deleted = true;
+				if (proof != null) {
+					proof.delete(c.lits, c.lits.length);
+				}
+			} else {
+				kept.add(c);
+			}
+		}
+		learnts = kept;
+		purgeWatches();
+		maxLearnts *= 1.1;
+	}
+
+	private boolean isLocked(ClauseRef c) {
+		return reasons[Math.abs(c.lits[0])] == c && value(c.lits[0]) == 1;
+	}
+
+	private void purgeWatches() {
+		for (WatchList ws : watches) {
+			if (ws == null) {
+				continue;
+			}
+			int j = 0;
+			for (int i = 0; i < ws.size; i++) {
+				if (!ws.data[i].deleted) {
+					ws.data[j++] = ws.data[i];
+				}
+			}
+			Arrays.fill(ws.data, j, ws.size, null);
+			ws.size = j;
+		}
+	}
+
+	//
+	// ASIGNACIONES
+	//
+
+	private int value(int lit) {
+		byte v = values[Math.abs(lit)];
+		return lit > 0 ? v : -v;
+	}
+
+	private void assign(int lit, ClauseRef reason) {
+		int v = Math.abs(lit);
+		values[v] = (byte) (lit > 0 ? 1 : -1);
+		levels[v] = numLevels;
+		reasons[v] = reason;
+		trail[trailSize++] = lit;
+		if (atMostOccurrences != null) {
+			countAtMost(lit, 1);
+		}
+		if (xorColumn[v] >= 0) {
+			xorDirty = true;
+		}
+	}
+
+	private void countAtMost(int lit, int delta) {
+		int i = index(lit);
+		for (int k = 0; k < atMostOccurrenceCount[i]; k++) {
+			atMostOccurrences[i][k].count += delta;
+		}
+	}
+
+	private void newDecisionLevel() {
+		if (numLevels == trailLim.length) {
+			trailLim = Arrays.copyOf(trailLim, numLevels * 2);
+		}
+		trailLim[numLevels++] = trailSize;
+	}
+
+	private void cancelUntil(int level) {
+		if (numLevels <= level) {
+			return;
+		}
+		for (int i = trailSize - 1; i >= trailLim[level]; i--) {
+			int lit = trail[i];
+			int v = Math.abs(lit);
+			values[v] = 0;
+			reasons[v] = null;
+			phases[v] = lit > 0;
+			if (atMostOccurrences != null) {
+				countAtMost(lit, -1);
+			}
+			if (xorColumn[v] >= 0) {
+				xorDirty = true;
+				if (!xorRebuild && xorAssigned[xorColumn[v]]) {
+					unassignXorColumn(xorColumn[v]);
+				}
+			}
+			if (heapIndex[v] < 0) {
+				heapInsert(v);
+			}
+		}
+		trailSize = trailLim[level];
+		qhead = trailSize;
+		xorHead = Math.min(xorHead, trailSize);
+		numLevels = level;
+	}
+
+	private void attach(ClauseRef c) {
+		watches[index(c.lits[0])].add(c);
+		watches[index(c.lits[1])].add(c);
+	}
+
+	private boolean mustStop() {
+		return interrupted || conflicts >= conflictLimit || Thread.currentThread().isInterrupted();
+	}
+
+	private void ensureVariables(int n) {
+		if (n <= numVars) {
+			return;
+		}
+		int capacity = Math.max(n + 1, values.length);
+		if (capacity > values.length) {
+			capacity = Math.max(capacity, values.length * 2);
+			values = Arrays.copyOf(values, capacity);
+			levels = Arrays.copyOf(levels, capacity);
+			reasons = Arrays.copyOf(reasons, capacity);
+			phases = Arrays.copyOf(phases, capacity);
+			seen = Arrays.copyOf(seen, capacity);
+			activity = Arrays.copyOf(activity, capacity);
+			heap = Arrays.copyOf(heap, capacity);
+			heapIndex = Arrays.copyOf(heapIndex, capacity);
+			trail = Arrays.copyOf(trail, capacity);
+			watches = Arrays.copyOf(watches, 2 * capacity);
+			xorColumn = Arrays.copyOf(xorColumn, capacity);
+			if (atMostOccurrences != null) {
+				atMostOccurrences = Arrays.copyOf(atMostOccurrences, 2 * capacity);
+				atMostOccurrenceCount = Arrays.copyOf(atMostOccurrenceCount, 2 * capacity);
+			}
+		}
+		for (int v = numVars + 1; v <= n; v++) {
+			watches[index(v)] = new WatchList();
+			watches[index(-v)] = new WatchList();
+			switch (config.getPolarity()) {
+			case TRUE:
+				phases[v] = true;
+				break;
+			case RANDOM:
+				phases[v] = random.nextBoolean();
+				break;
+			default:
+				phases[v] = false;
+			}
+			switch (config.getOrder()) {
+			case INPUT:
+				activity[v] = -v;
+				break;
+			case RANDOM:
+				activity[v] = random.nextDouble() * 1e-5;
+				break;
+			default:
+				activity[v] = 0;
+			}
+			heapIndex[v] = -1;
+			xorColumn[v] = -1;
+			numVars = v;
+			heapInsert(v);
+		}
+	}
+
+	private static void sortByVariable(int[] lits) {
+		/* index() ordena por variable y, dentro de cada una, el positivo primero */
+		for (int i = 0; i < lits.length; i++) {
+			lits[i] = index(lits[i]);
+		}
+		Arrays.sort(lits);
+		for (int i = 0; i < lits.length; i++) {
+			lits[i] = (lits[i] & 1) == 1 ? -(lits[i] >> 1) : lits[i] >> 1;
+		}
+	}
+
+	//
+	// ACTIVIDAD
+	//
+
+	private void bumpVariable(int v) {
+		if (config.getOrder() == Config.Order.INPUT) {
+			return;
+		}
+		activity[v] += varInc;
+		if (activity[v] > RESCALE_LIMIT) {
+			for (int i = 1; i <= numVars; i++) {
+				activity[i] /= RESCALE_LIMIT;
+			}
+			varInc /= RESCALE_LIMIT;
+		}
+		if (heapIndex[v] >= 0) {
+			heapUp(heapIndex[v]);
+		}
+	}
+
+	private void bumpClause(ClauseRef c) {
+		c.activity += clauseInc;
+		if (c.activity > RESCALE_LIMIT) {
+			for (ClauseRef l : learnts) {
+				l.activity /= RESCALE_LIMIT;
+			}
+			clauseInc /= RESCALE_LIMIT;
+		}
+	}
+
+	/* Serie de Luby: 1 1 2 1 1 2 4 1 1 2 1 1 2 4 8 ... */
+	private static int luby(int i) {
+		int size = 1;
+		int seq = 0;
+		while (size < i + 1) {
+			seq++;
+			size = 2 * size + 1;
+		}
+		while (size - 1 != i) {
+			size = (size - 1) >> 1;
+			seq--;
+			i = i % size;
+		}
+		return 1 << seq;
+	}
+
+	//
+	// MONTICULO DE VARIABLES POR ACTIVIDAD
+	//
+
+	private void heapInsert(int v) {
+		heapIndex[v] = heapSize;
+		heap[heapSize++] = v;
+		heapUp(heapIndex[v]);
+	}
+
+	private int heapRemoveMax() {
+		int top = heap[0];
+		heapIndex[top] = -1;
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapIndex[heap[0]] = 0;
+			heapDown(0);
+		}
+		return top;
+	}
+
+	private void heapUp(int i) {
+		int v = heap[i];
+		while (i > 0) {
+			int parent = (i - 1) >> 1;
+			if (activity[heap[parent]] >= activity[v]) {
+				break;
+			}
+			heap[i] = heap[parent];
+			heapIndex[heap[i]] = i;
+			i = parent;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+
+	private void heapDown(int i) {
+		int v = heap[i];
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= heapSize) {
+				break;
+			}
+			if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+				child++;
+			}
+			if (activity[heap[child]] <= activity[v]) {
+				break;
+			}
+			heap[i] = heap[child];
+			heapIndex[heap[i]] = i;
+			i = child;
+		}
+		heap[i] = v;
+		heapIndex[v] = i;
+	}
+}
@@ -0,0 +1,147 @@
+package algorithms;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Canal para compartir clausulas derivadas entre varios resolutores que
+ * trabajan en paralelo sobre la misma formula.
+ *
+ * Cada resolutor escribe en su propio buffer circular acotado, sin
+ * bloqueos: solo el escribe en el, y los demas lo leen cada uno a su ritmo
+ * con su propio cursor. Si un lector se queda atras mas de lo que cabe en el
+ * buffer, pierde las clausulas mas antiguas, y si lee una posicion mientras
+ * se sobrescribe obtiene una clausula mas nueva; ambas cosas son inocuas,
+ * porque toda clausula publicada es consecuencia de la formula.
+ *
+ * Solo se admiten las clausulas cortas o con pocos niveles de decision
+ * distintos (LBD), que son las que mas podan a los demas.
+ */
+public class ClauseExchange {
+
+	/* Buffer circular de un productor */
+	private static final class Ring {
+		final AtomicReferenceArray<int[]> slots;
+		final AtomicLong head = new AtomicLong();
+
+		Ring(int capacity) {
+			slots = new AtomicReferenceArray<int[]>(capacity);
+		}
+	}
+
+	/**
+	 * Conexion de un resolutor al canal: publica en su buffer y lee de los
+	 * de los demas.
+	 */
+	public final class Port {
+		private int id;
+		private long[] cursors;
+		private long exported = 0;
+		private long imported = 0;
+
+		private Port(int id) {
+			this.id = id;
+			this.cursors = new long[rings.length];
+		}
+
+		/**
+		 * @return true si una clausula de esa longitud y LBD debe compartirse.
+		 */
+		public boolean accepts(int length, int lbd) {
+			return length <= maxLength || lbd <= maxLbd;
+		}
+
+		/**
+		 * Publica una clausula, que no debe modificarse despues.
+		 */
+		public void export(int[] clause) {
+			Ring ring = rings[id];
+			long h = ring.head.get();
+			ring.slots.set((int) (h & mask), clause);
+			ring.head.lazySet(h + 1);
+			exported++;
+		}
+
+		/**
+		 * Anade a la lista las clausulas publicadas por los demas desde la
+		 * ultima llamada.
+		 */
+		public void collect(List<int[]> out) {
+			for (int p = 0; p < rings.length; p++) {
+				if (p == id) {
+					continue;
+				}
+				Ring ring = rings[p];
+				long h = ring.head.get();
+				long from = Math.max(cursors[p], h - capacity);
+				for (long i = from; i < h; i++) {
+					int[] clause = ring.slots.get((int) (i & mask));
+					if (clause != null) {
+						out.add(clause);
+						imported++;
+					}
+				}
+				cursors[p] = h;
+			}
+		}
+
+		public long getExported() {
+			return exported;
+		}
+
+		public long getImported() {
+			return imported;
+		}
+	}
+
+	private Ring[] rings;
+	private int capacity;
+	private int mask;
+	private int maxLength;
+	private int maxLbd;
+	private AtomicInteger connected = new AtomicInteger();
+
+	/**
+	 * @param producers
+	 *            numero maximo de resolutores conectados.
+	 * @param capacity
+	 *            clausulas que caben en el buffer de cada uno (se redondea a
+	 *            potencia de 2).
+	 * @param maxLength
+	 *            longitud maxima de las clausulas compartidas.
+	 * @param maxLbd
+	 *            se comparten tambien las clausulas con LBD hasta este valor.
+	 */
+	public ClauseExchange(int producers, int capacity, int maxLength, int maxLbd) {
+		this.capacity = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+		this.mask = this.capacity - 1;
+		this.maxLength = maxLength;
+		this.maxLbd = maxLbd;
+		this.rings = new Ring[producers];
+		for (int i = 0; i < producers; i++) {
+			rings[i] = new Ring(this.capacity);
+		}
+	}
+
+	/**
+	 * Canal para unidades y clausulas binarias, y clausulas con LBD 2.
+	 */
+	public ClauseExchange(int producers) {
+		this(producers, 4096, 2, 2);
+	}
+
+	/**
+	 * Conecta un nuevo resolutor al canal.
+	 *
+	 * @throws IllegalStateException si ya estan conectados todos.
+	 */
+	public Port connect() {
+		int id = connected.getAndIncrement();
+		if (id >= rings.length) {
+			throw new IllegalStateException("All " + rings.length + " ports already connected");
+		}
+		return new Port(id);
+	}
+}
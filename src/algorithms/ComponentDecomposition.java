@@ -0,0 +1,152 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import utils.*;
+
+/**
+ * Descomposicion de una sentencia en componentes independientes: grupos de
+ * clausulas que no comparten ninguna variable, ni directa ni
+ * indirectamente. La sentencia es satisfacible si y solo si lo son todas
+ * sus componentes, de modo que se pueden resolver por separado y en
+ * paralelo, y el coste pasa a ser la suma del de cada componente en lugar
+ * del producto.
+ */
+public class ComponentDecomposition {
+
+	/**
+	 * Algoritmo con el que se resuelve cada componente. Se llama desde
+	 * varios hilos a la vez, por lo que no debe compartir estado mutable
+	 * entre llamadas. Debe comprobar si el hilo se ha interrumpido y, en
+	 * ese caso, terminar cuanto antes con cualquier resultado.
+	 */
+	public interface ComponentSolver {
+		boolean isSatisfiable(Sentence component);
+	}
+
+	/**
+	 * Divide la sentencia en componentes conexas por variables, usando
+	 * union-find sobre los simbolos de cada clausula. Las componentes se
+	 * devuelven de menor a mayor numero de clausulas, para que las pequenas
+	 * se resuelvan antes y una insatisfacible no espere a las grandes.
+	 */
+	public static List<ArrayList<Clause>> split(List<Clause> sentence) {
+		Map<PropositionSymbol, Integer> indices = new HashMap<PropositionSymbol, Integer>();
+		int[] parent = new int[16];
+		int[] clauseRoot = new int[sentence.size()];
+
+		for (int c = 0; c < sentence.size(); c++) {
+			int root = -1;
+			for (PropositionSymbol p : sentence.get(c).getSymbols()) {
+				Integer v = indices.get(p);
+				if (v == null) {
+					v = indices.size();
+					indices.put(p, v);
+					if (v == parent.length) {
+						parent = Arrays.copyOf(parent, v * 2);
+					}
+					parent[v] = v;
+				}
+				root = root == -1 ? find(parent, v) : union(parent, root, v);
+			}
+			clauseRoot[c] = root;
+		}
+
+		/* Agrupa las clausulas por la raiz de su componente */
+		Map<Integer, ArrayList<Clause>> groups = new HashMap<Integer, ArrayList<Clause>>();
+		List<ArrayList<Clause>> components = new ArrayList<ArrayList<Clause>>();
+		for (int c = 0; c < sentence.size(); c++) {
+			ArrayList<Clause> group;
+			if (clauseRoot[c] == -1) {
+				/* La clausula vacia es una componente por si sola */
+				group = new ArrayList<Clause>();
+				components.add(group);
+			} else {
+				int root = find(parent, clauseRoot[c]);
+				group = groups.get(root);
+				if (group == null) {
+					group = new ArrayList<Clause>();
+					groups.put(root, group);
+					components.add(group);
+				}
+			}
+			group.add(sentence.get(c));
+		}
+
+		Collections.sort(components, new Comparator<ArrayList<Clause>>() {
+			public int compare(ArrayList<Clause> a, ArrayList<Clause> b) {
+				return a.size() - b.size();
+			}
+		});
+		return components;
+	}
+
+	/**
+	 * Resuelve las componentes en paralelo, en el orden de la lista. En
+	 * cuanto una resulta insatisfacible se interrumpen los hilos de las
+	 * demas, que abandonan la busqueda si su algoritmo lo comprueba. Los
+	 * hilos son demonio, asi que una busqueda que tarde en parar no impide
+	 * que termine el programa.
+	 *
+	 * @return true si todas las componentes son satisfacibles.
+	 */
+	public static boolean isSatisfiable(List<ArrayList<Clause>> components,
+			final ComponentSolver solver, int threads) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, components.size())),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "componente");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		CompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(executor);
+		try {
+			for (final ArrayList<Clause> component : components) {
+				completion.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						return solver.isSatisfiable(new Sentence(component));
+					}
+				});
+			}
+			for (int i = 0; i < components.size(); i++) {
+				if (!completion.take().get()) {
+					return false;
+				}
+			}
+			return true;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static int find(int[] parent, int v) {
+		while (parent[v] != v) {
+			parent[v] = parent[parent[v]];
+			v = parent[v];
+		}
+		return v;
+	}
+
+	private static int union(int[] parent, int a, int b) {
+		int rootA = find(parent, a);
+		int rootB = find(parent, b);
+		parent[rootB] = rootA;
+		return rootA;
+	}
+}
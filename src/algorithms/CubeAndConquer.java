@@ -0,0 +1,187 @@
+package algorithms;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import utils.*;
+
+/**
+ * Busqueda sistematica en paralelo por cubos (cube-and-conquer).
+ *
+ * El espacio de busqueda se divide asignando las variables que mas aparecen
+ * en la formula: cada cubo es una conjuncion de literales sobre ellas, como
+ * las dos ramas P=cierto y P=falso de DPLL. Cada cubo es una tarea de un
+ * ForkJoinPool, de forma que los hilos libres roban trabajo de los ocupados,
+ * y se resuelve con {@link CDCLSat} con un limite de conflictos: si un cubo
+ * no se resuelve en ese limite se vuelve a dividir por la siguiente
+ * variable. Cada hilo usa un unico resolutor incremental al que cada cubo
+ * se pasa como hipotesis, asi que las clausulas aprendidas en un cubo
+ * sirven para los siguientes y para los cubos en que se divide. La busqueda termina con el primer cubo satisfacible, y la
+ * formula solo es insatisfacible si se refutan todos los cubos.
+ */
+public class CubeAndConquer {
+
+	private DimacsFormula formula;
+	private int depth;
+	private long conflictsPerCube;
+
+	/* Variables por las que se divide, de mas a menos apariciones */
+	private int[] splitOrder;
+
+	private AtomicReference<boolean[]> model = new AtomicReference<boolean[]>();
+	/* Resolutor incremental de cada hilo del ForkJoinPool */
+	private ConcurrentHashMap<Thread, CDCLSat> solvers = new ConcurrentHashMap<Thread, CDCLSat>();
+	private volatile boolean stopped = false;
+
+	/**
+	 * @param formula
+	 *            formula a resolver.
+	 * @param depth
+	 *            numero de variables de los cubos iniciales (2^depth cubos).
+	 * @param conflictsPerCube
+	 *            conflictos tras los que un cubo se vuelve a dividir.
+	 */
+	public CubeAndConquer(DimacsFormula formula, int depth, long conflictsPerCube) {
+		this.formula = formula;
+		this.depth = Math.min(depth, formula.getNumVariables());
+		this.conflictsPerCube = conflictsPerCube;
+		this.splitOrder = occurrenceOrder(formula);
+	}
+
+	/**
+	 * Resuelve la formula con el ForkJoinPool indicado.
+	 *
+	 * @return true si es satisfacible, false si no lo es, o null si se ha
+	 *         interrumpido la busqueda.
+	 */
+	public Boolean isSatisfiable(ForkJoinPool pool) {
+		Boolean result = pool.invoke(new CubeTask(new int[0], true));
+		if (model.get() != null) {
+			return true;
+		}
+		return result;
+	}
+
+	/**
+	 * Interrumpe la busqueda en curso.
+	 */
+	public void interrupt() {
+		stopped = true;
+		for (CDCLSat solver : solvers.values()) {
+			solver.interrupt();
+		}
+	}
+
+	/**
+	 * @return el modelo encontrado, indexado por variable, o null.
+	 */
+	public boolean[] getModel() {
+		return model.get();
+	}
+
+	/*
+	 * Resuelve un cubo. Devuelve false si el cubo queda refutado, true si
+	 * es satisfacible y null si la busqueda se ha detenido
+	 */
+	private class CubeTask extends RecursiveTask<Boolean> {
+
+		private static final long serialVersionUID = 1L;
+
+		private int[] cube;
+		private boolean initial;
+
+		CubeTask(int[] cube, boolean initial) {
+			this.cube = cube;
+			this.initial = initial;
+		}
+
+		@Override
+		protected Boolean compute() {
+			if (stopped) {
+				return null;
+			}
+			if (initial && cube.length < depth) {
+				return split(true);
+			}
+
+			CDCLSat solver = solvers.get(Thread.currentThread());
+			if (solver == null) {
+				solver = new CDCLSat();
+				solver.addFormula(formula);
+				solvers.put(Thread.currentThread(), solver);
+			}
+			if (stopped) {
+				return null;
+			}
+			/* Si el hilo resuelve otro cubo mientras espera a los subcubos, esta llamada ya ha terminado */
+			solver.setConflictBudget(cube.length < splitOrder.length ? conflictsPerCube : -1);
+			Boolean result = solver.solve(cube);
+			if (Boolean.TRUE.equals(result)) {
+				model.compareAndSet(null, solver.getModel());
+				interrupt();
+				return true;
+			}
+			if (result != null || stopped) {
+				return result;
+			}
+			/* Cubo dificil: se divide por la siguiente variable */
+			if (cube.length == splitOrder.length) {
+				return null;
+			}
+			return split(false);
+		}
+
+		private Boolean split(boolean initial) {
+			int v = splitOrder[cube.length];
+			CubeTask positive = new CubeTask(extend(cube, v), initial);
+			CubeTask negative = new CubeTask(extend(cube, -v), initial);
+			positive.fork();
+			Boolean negativeResult = negative.compute();
+			Boolean positiveResult = positive.join();
+			if (Boolean.TRUE.equals(negativeResult) || Boolean.TRUE.equals(positiveResult)) {
+				return true;
+			}
+			if (negativeResult == null || positiveResult == null) {
+				return null;
+			}
+			return false;
+		}
+	}
+
+	private static int[] extend(int[] cube, int lit) {
+		int[] extended = Arrays.copyOf(cube, cube.length + 1);
+		extended[cube.length] = lit;
+		return extended;
+	}
+
+	/*
+	 * Ordena las variables de mas a menos apariciones en la formula
+	 */
+	private static int[] occurrenceOrder(DimacsFormula formula) {
+		int n = formula.getNumVariables();
+		final int[] occurrences = new int[n + 1];
+		for (int[] clause : formula.getClauses()) {
+			for (int lit : clause) {
+				occurrences[Math.abs(lit)]++;
+			}
+		}
+		Integer[] order = new Integer[n];
+		for (int v = 1; v <= n; v++) {
+			order[v - 1] = v;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return occurrences[b] - occurrences[a];
+			}
+		});
+		int[] result = new int[n];
+		for (int i = 0; i < n; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+}
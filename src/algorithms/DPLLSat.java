@@ -79,10 +79,14 @@ public class DPLLSat {
 	 * @param model
 	 *            contains the values for assigned symbols.
 	 * @return true if the model is satisfiable under current assignments, false
-	 *         otherwise.
+	 *         otherwise, or if the thread has been interrupted.
 	 */
 	public boolean dpll(Set<Clause> clauses, List<PropositionSymbol> symbols,
 			Model model) {
+		// abandon the search if another thread asked us to stop
+		if (Thread.currentThread().isInterrupted()) {
+			return false;
+		}
 		// if every clause in clauses is true in model then return true
 		if (everyClauseTrue(clauses, model)) {
 			return true;
@@ -133,21 +137,13 @@ public class DPLLSat {
 	 *            a propositional sentence.
 	 * @return true, if &alpha; is entailed by KB, false otherwise.
 	 */
-//	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
-//		// AIMA3e p.g. 260: kb |= alpha, can be done by testing
-//		// unsatisfiability of kb & ~alpha.
-//		Set<Clause>             kbAndNotAlpha = new LinkedHashSet<Clause>();
-//		Sentence                notQuery      = new ComplexSentence(Connective.NOT, alpha);
-//		Set<PropositionSymbol>  symbols       = new LinkedHashSet<PropositionSymbol>();
-//		List<PropositionSymbol> querySymbols  = new ArrayList<PropositionSymbol>(SymbolCollector.getSymbolsFrom(notQuery));
-//		
-//		kbAndNotAlpha.addAll(kb.asCNF());
-//		kbAndNotAlpha.addAll(ConvertToConjunctionOfClauses.convert(notQuery).getClauses());
-//		symbols.addAll(querySymbols);
-//		symbols.addAll(kb.getSymbols());
-//
-//		return !dpll(kbAndNotAlpha, new ArrayList<PropositionSymbol>(symbols), new Model());
-//	}
+	public boolean isEntailed(KnowledgeBase kb, Sentence alpha) {
+		// AIMA3e p.g. 260: kb |= alpha, can be done by testing
+		// unsatisfiability of kb & ~alpha. The knowledge base keeps its
+		// clauses compiled, so ~alpha is only added as temporary assumptions
+		// instead of re-collecting kb & ~alpha for every query.
+		return kb.ask(alpha);
+	}
 
 	//
 	// PROTECTED:
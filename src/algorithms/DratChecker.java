@@ -0,0 +1,446 @@
+package algorithms;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import utils.*;
+
+import static utils.DimacsFormula.index;
+
+/**
+ * Comprueba una prueba DRAT binaria, como las de {@link DratWriter}, contra
+ * la formula de partida.
+ *
+ * Las clausulas de la prueba se comprueban en orden. Cada clausula anadida
+ * C debe ser RUP: al hacer falsos todos sus literales, la propagacion
+ * unitaria sobre las clausulas vigentes llega a un conflicto. Si no lo es,
+ * debe ser RAT sobre su primer literal p: para cada clausula vigente D con
+ * -p, la resolvente de C y D es RUP. La prueba es valida si se llega a la
+ * clausula vacia.
+ *
+ * Como en drat-trim, se ignoran los borrados de las clausulas que son la
+ * razon de una asignacion del nivel superior, porque deshacerla obligaria
+ * a repetir la propagacion desde el principio.
+ */
+public class DratChecker {
+
+	/* Clave de una clausula: sus literales ordenados */
+	private static final class Key {
+		final int[] lits;
+		final int hash;
+
+		Key(int[] lits) {
+			this.lits = lits;
+			this.hash = Arrays.hashCode(lits);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(lits, ((Key) o).lits);
+		}
+	}
+
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+
+	private int numVars = 0;
+	private List<int[]> clauses = new ArrayList<int[]>();
+	private Map<Key, List<Integer>> byKey = new HashMap<Key, List<Integer>>();
+
+	/* Clausulas vigiladas por cada literal */
+	private int[][] watches = new int[2][];
+	private int[] watchCount = new int[2];
+
+	private byte[] values = new byte[1];
+	private int[] reasons = new int[1];
+	private int[] trail = new int[0];
+	private int trailSize = 0;
+	private int qhead = 0;
+	private boolean inconsistent = false;
+
+	private long lemmas = 0;
+	private long deletions = 0;
+	private long ratLemmas = 0;
+	private long ignoredDeletions = 0;
+	private long failedLemma = -1;
+
+	/* Lectura de la prueba */
+	private FileChannel channel;
+	private ByteBuffer buffer;
+
+	public DratChecker(DimacsFormula formula) {
+		ensureVariables(formula.getNumVariables());
+		for (int[] clause : formula.getClauses()) {
+			addClause(clause);
+		}
+	}
+
+	/**
+	 * Comprueba la prueba del fichero.
+	 *
+	 * @return true si la prueba demuestra que la formula es insatisfacible.
+	 */
+	public boolean check(Path proof) throws IOException {
+		channel = FileChannel.open(proof, StandardOpenOption.READ);
+		buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		buffer.flip();
+		try {
+			int[] lits = new int[16];
+			int type;
+			while (!inconsistent && (type = nextByte()) >= 0) {
+				int size = 0;
+				int lit;
+				while ((lit = nextLiteral()) != 0) {
+					if (size == lits.length) {
+						lits = Arrays.copyOf(lits, size * 2);
+					}
+					lits[size++] = lit;
+				}
+				int[] clause = Arrays.copyOf(lits, size);
+				if (type == 'a') {
+					lemmas++;
+					if (!isImplied(clause)) {
+						failedLemma = lemmas;
+						return false;
+					}
+					addClause(clause);
+				} else if (type == 'd') {
+					deletions++;
+					deleteClause(clause);
+				} else {
+					throw new IOException("Prueba DRAT binaria no valida: tipo " + type);
+				}
+			}
+			return inconsistent;
+		} finally {
+			channel.close();
+		}
+	}
+
+	public long getLemmas() {
+		return lemmas;
+	}
+
+	public long getDeletions() {
+		return deletions;
+	}
+
+	/**
+	 * @return numero de clausulas que no son RUP y se han validado como RAT.
+	 */
+	public long getRatLemmas() {
+		return ratLemmas;
+	}
+
+	public long getIgnoredDeletions() {
+		return ignoredDeletions;
+	}
+
+	/**
+	 * @return numero de la clausula anadida que no se ha podido validar, o
+	 *         -1 si no la hay.
+	 */
+	public long getFailedLemma() {
+		return failedLemma;
+	}
+
+	//
+	// COMPROBACION
+	//
+
+	/*
+	 * Comprueba si la clausula es RUP, y si no, si es RAT sobre su primer
+	 * literal
+	 */
+	private boolean isImplied(int[] clause) {
+		for (int lit : clause) {
+			ensureVariables(Math.abs(lit));
+		}
+		if (isRup(clause)) {
+			return true;
+		}
+		if (clause.length == 0) {
+			return false;
+		}
+		int pivot = clause[0];
+		for (int i = 0; i < clauses.size(); i++) {
+			int[] other = clauses.get(i);
+			if (other == null || !contains(other, -pivot)) {
+				continue;
+			}
+			int[] resolvent = Arrays.copyOf(clause, clause.length + other.length - 1);
+			int n = clause.length;
+			for (int lit : other) {
+				if (lit != -pivot) {
+					resolvent[n++] = lit;
+				}
+			}
+			if (!isRup(Arrays.copyOf(resolvent, n))) {
+				return false;
+			}
+		}
+		ratLemmas++;
+		return true;
+	}
+
+	/*
+	 * Hace falsos los literales de la clausula y propaga. Una clausula
+	 * tautologica o con un literal ya cierto es RUP directamente
+	 */
+	private boolean isRup(int[] clause) {
+		if (inconsistent) {
+			return true;
+		}
+		int start = trailSize;
+		boolean conflict = false;
+		for (int lit : clause) {
+			int val = value(lit);
+			if (val == 1) {
+				conflict = true;
+				break;
+			}
+			if (val == 0) {
+				assign(-lit, -1);
+			}
+		}
+		if (!conflict) {
+			conflict = !propagate();
+		}
+		undo(start);
+		return conflict;
+	}
+
+	private void addClause(int[] literals) {
+		if (inconsistent) {
+			return;
+		}
+		int[] lits = DimacsFormula.normalize(literals);
+		if (lits == null) {
+			/* Tautologia: siempre se cumple */
+			return;
+		}
+		for (int lit : lits) {
+			ensureVariables(Math.abs(lit));
+		}
+		int id = clauses.size();
+		clauses.add(lits);
+		Key key = new Key(lits.clone());
+		List<Integer> ids = byKey.get(key);
+		if (ids == null) {
+			ids = new ArrayList<Integer>(1);
+			byKey.put(key, ids);
+		}
+		ids.add(id);
+
+		if (lits.length == 0) {
+			inconsistent = true;
+			return;
+		}
+		/* Los literales no falsos van delante, y los ciertos antes que nada */
+		sortByValue(lits);
+		if (lits.length >= 2) {
+			watch(lits[0], id);
+			watch(lits[1], id);
+		}
+		if (value(lits[0]) == -1) {
+			inconsistent = true;
+		} else if (value(lits[0]) == 0 && (lits.length == 1 || value(lits[1]) == -1)) {
+			assign(lits[0], id);
+			if (!propagate()) {
+				inconsistent = true;
+			}
+		}
+	}
+
+	private void deleteClause(int[] literals) {
+		int[] lits = DimacsFormula.normalize(literals);
+		if (lits == null) {
+			return;
+		}
+		List<Integer> ids = byKey.get(new Key(lits));
+		if (ids == null || ids.isEmpty()) {
+			return;
+		}
+		int id = ids.get(ids.size() - 1);
+		for (int lit : clauses.get(id)) {
+			if (value(lit) == 1 && reasons[Math.abs(lit)] == id) {
+				ignoredDeletions++;
+				return;
+			}
+		}
+		ids.remove(ids.size() - 1);
+		clauses.set(id, null);
+	}
+
+	private void sortByValue(int[] lits) {
+		int n = 0;
+		for (int wanted = 1; wanted >= -1; wanted--) {
+			for (int i = n; i < lits.length; i++) {
+				if (value(lits[i]) == wanted) {
+					int tmp = lits[n];
+					lits[n++] = lits[i];
+					lits[i] = tmp;
+				}
+			}
+		}
+	}
+
+	private static boolean contains(int[] lits, int lit) {
+		for (int other : lits) {
+			if (other == lit) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//
+	// PROPAGACION
+	//
+
+	/*
+	 * Propagacion unitaria con dos literales vigilados. Las clausulas
+	 * borradas se quitan de las listas al pasar por ellas. Devuelve false si
+	 * hay conflicto
+	 */
+	private boolean propagate() {
+		while (qhead < trailSize) {
+			int falseLit = -trail[qhead++];
+			int fi = index(falseLit);
+			int[] list = watches[fi];
+			int count = watchCount[fi];
+			int kept = 0;
+			for (int w = 0; w < count; w++) {
+				int id = list[w];
+				int[] lits = clauses.get(id);
+				if (lits == null) {
+					continue;
+				}
+				if (lits[0] == falseLit) {
+					lits[0] = lits[1];
+					lits[1] = falseLit;
+				}
+				if (value(lits[0]) == 1) {
+					list[kept++] = id;
+					continue;
+				}
+				boolean moved = false;
+				for (int k = 2; k < lits.length; k++) {
+					if (value(lits[k]) != -1) {
+						lits[1] = lits[k];
+						lits[k] = falseLit;
+						watch(lits[1], id);
+						moved = true;
+						break;
+					}
+				}
+				if (moved) {
+					continue;
+				}
+				list[kept++] = id;
+				if (value(lits[0]) == -1) {
+					for (w++; w < count; w++) {
+						list[kept++] = list[w];
+					}
+					watchCount[fi] = kept;
+					qhead = trailSize;
+					return false;
+				}
+				assign(lits[0], id);
+			}
+			watchCount[fi] = kept;
+		}
+		return true;
+	}
+
+	private void watch(int lit, int id) {
+		int i = index(lit);
+		if (watches[i] == null) {
+			watches[i] = new int[4];
+		} else if (watchCount[i] == watches[i].length) {
+			watches[i] = Arrays.copyOf(watches[i], watches[i].length * 2);
+		}
+		watches[i][watchCount[i]++] = id;
+	}
+
+	private void assign(int lit, int reason) {
+		values[Math.abs(lit)] = (byte) (lit > 0 ? 1 : -1);
+		reasons[Math.abs(lit)] = reason;
+		trail[trailSize++] = lit;
+	}
+
+	private void undo(int start) {
+		while (trailSize > start) {
+			values[Math.abs(trail[--trailSize])] = 0;
+		}
+		qhead = start;
+	}
+
+	private int value(int lit) {
+		int val = values[Math.abs(lit)];
+		return lit > 0 ? val : -val;
+	}
+
+	private void ensureVariables(int n) {
+		if (n <= numVars) {
+			return;
+		}
+		int capacity = Math.max(n + 1, 2 * values.length);
+		values = Arrays.copyOf(values, capacity);
+		reasons = Arrays.copyOf(reasons, capacity);
+		trail = Arrays.copyOf(trail, capacity);
+		watches = Arrays.copyOf(watches, 2 * capacity);
+		watchCount = Arrays.copyOf(watchCount, 2 * capacity);
+		numVars = n;
+	}
+
+	//
+	// LECTURA
+	//
+
+	private int nextByte() throws IOException {
+		if (!buffer.hasRemaining()) {
+			buffer.clear();
+			int read;
+			do {
+				read = channel.read(buffer);
+			} while (read == 0);
+			buffer.flip();
+			if (read < 0) {
+				return -1;
+			}
+		}
+		return buffer.get() & 0xff;
+	}
+
+	/*
+	 * Lee un literal codificado en grupos de 7 bits. Devuelve 0 al final de
+	 * la clausula
+	 */
+	private int nextLiteral() throws IOException {
+		int u = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = nextByte();
+			if (b < 0) {
+				throw new IOException("Prueba DRAT binaria incompleta");
+			}
+			u |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (u & 1) == 0 ? u >> 1 : -(u >> 1);
+	}
+}
@@ -0,0 +1,191 @@
+package algorithms;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import utils.*;
+
+/**
+ * Base de conocimiento de Horn incremental. Mantiene en todo momento el
+ * modelo minimo de las clausulas introducidas: al anadir un hecho o una
+ * regla solo se propagan sus consecuencias nuevas, por lo que el coste total
+ * de una secuencia de operaciones es lineal en el numero total de literales.
+ * Las consultas de satisfacibilidad y pertenencia al modelo son O(1).
+ *
+ * Las clausulas no se copian: de cada regla solo se guarda su cabeza y un
+ * contador de los literales negativos aun no resueltos.
+ */
+public class HornKnowledgeBase {
+
+	private Map<PropositionSymbol, Integer> indices = new HashMap<PropositionSymbol, Integer>();
+
+	/* Valor de cada simbolo en el modelo minimo */
+	private boolean[] value = new boolean[16];
+
+	/* Reglas en las que aparece negado cada simbolo aun no cierto */
+	private int[][] occurrences = new int[16][];
+	private int[] occurrencesSize = new int[16];
+
+	/* Cabeza (-1 si no tiene) y literales negativos pendientes de cada regla */
+	private int[] head = new int[16];
+	private int[] counter = new int[16];
+	private int numRules = 0;
+
+	/* Cola de simbolos ciertos pendientes de propagar */
+	private int[] queue = new int[16];
+
+	private boolean inconsistent = false;
+
+	/**
+	 * Anade una clausula de Horn a la base y propaga sus consecuencias.
+	 *
+	 * @throws IllegalArgumentException si la clausula no es de Horn.
+	 */
+	public void tell(Clause clause) {
+		if (clause.getNumberPositiveLiterals() > 1) {
+			throw new IllegalArgumentException("Not a Horn clause: " + clause);
+		}
+		if (inconsistent) {
+			/* La base ya es insatisfacible, nada puede cambiarlo */
+			return;
+		}
+
+		int rule = numRules++;
+		if (rule == head.length) {
+			head = Arrays.copyOf(head, rule * 2);
+			counter = Arrays.copyOf(counter, rule * 2);
+		}
+		head[rule] = -1;
+		for (PropositionSymbol p : clause.getPositiveSymbols()) {
+			head[rule] = index(p);
+		}
+
+		/*
+		 * Solo se cuentan los literales negativos cuyo simbolo aun no es
+		 * cierto; los demas ya estan resueltos
+		 */
+		int pending = 0;
+		for (PropositionSymbol n : clause.getNegativeSymbols()) {
+			int v = index(n);
+			if (!value[v]) {
+				addOccurrence(v, rule);
+				pending++;
+			}
+		}
+		counter[rule] = pending;
+
+		if (pending == 0) {
+			fire(rule);
+		}
+	}
+
+	/**
+	 * Anade un hecho a la base y propaga sus consecuencias.
+	 */
+	public void tellFact(PropositionSymbol symbol) {
+		tell(new Clause(new Literal(symbol, true)));
+	}
+
+	/**
+	 * Anade todas las clausulas de la sentencia a la base.
+	 */
+	public void tellAll(Iterable<Clause> clauses) {
+		for (Clause clause : clauses) {
+			tell(clause);
+		}
+	}
+
+	/**
+	 * @return true si las clausulas introducidas hasta ahora son satisfacibles.
+	 */
+	public boolean isSatisfiable() {
+		return !inconsistent;
+	}
+
+	/**
+	 * @return true si el simbolo es cierto en el modelo minimo, es decir,
+	 *         si la base (satisfacible) implica el simbolo.
+	 */
+	public boolean ask(PropositionSymbol symbol) {
+		Integer v = indices.get(symbol);
+		return v != null && value[v];
+	}
+
+	/**
+	 * @return el modelo minimo actual, con el resto de simbolos a falso.
+	 */
+	public Model getModel() {
+		Model model = new Model();
+		for (Map.Entry<PropositionSymbol, Integer> e : indices.entrySet()) {
+			model.unionInPlace(e.getKey(), value[e.getValue()]);
+		}
+		return model;
+	}
+
+	/*
+	 * Hace cierta la cabeza de una regla cuyos literales negativos estan
+	 * todos resueltos y propaga en anchura las consecuencias
+	 */
+	private void fire(int rule) {
+		int queueHead = 0;
+		int queueTail = enqueueHead(rule, 0);
+		while (!inconsistent && queueHead < queueTail) {
+			int v = queue[queueHead++];
+			int[] rules = occurrences[v];
+			int size = occurrencesSize[v];
+			for (int i = 0; i < size && !inconsistent; i++) {
+				int r = rules[i];
+				if (--counter[r] == 0) {
+					queueTail = enqueueHead(r, queueTail);
+				}
+			}
+			/* El simbolo ya es cierto: sus listas no volveran a recorrerse */
+			occurrences[v] = null;
+			occurrencesSize[v] = 0;
+		}
+	}
+
+	private int enqueueHead(int rule, int queueTail) {
+		int h = head[rule];
+		if (h == -1) {
+			inconsistent = true;
+		} else if (!value[h]) {
+			value[h] = true;
+			if (queueTail == queue.length) {
+				queue = Arrays.copyOf(queue, queueTail * 2);
+			}
+			queue[queueTail++] = h;
+		}
+		return queueTail;
+	}
+
+	private void addOccurrence(int v, int rule) {
+		int[] rules = occurrences[v];
+		if (rules == null) {
+			rules = new int[4];
+		} else if (occurrencesSize[v] == rules.length) {
+			rules = Arrays.copyOf(rules, rules.length * 2);
+		}
+		rules[occurrencesSize[v]++] = rule;
+		occurrences[v] = rules;
+	}
+
+	/*
+	 * Devuelve el indice asociado al simbolo, asignandole uno nuevo
+	 * si es la primera vez que aparece
+	 */
+	private int index(PropositionSymbol p) {
+		Integer v = indices.get(p);
+		if (v == null) {
+			v = indices.size();
+			indices.put(p, v);
+			if (v == value.length) {
+				value = Arrays.copyOf(value, v * 2);
+				occurrences = Arrays.copyOf(occurrences, v * 2);
+				occurrencesSize = Arrays.copyOf(occurrencesSize, v * 2);
+			}
+		}
+		return v;
+	}
+}
@@ -0,0 +1,162 @@
+package algorithms;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import utils.*;
+
+/**
+ * Base de conocimiento proposicional general para consultas de implicacion
+ * (KB |= alpha).
+ *
+ * Las clausulas de la base se compilan una sola vez en un {@link CDCLSat}
+ * incremental. KB |= alpha si y solo si KB & -alpha es insatisfacible, y
+ * cuando alpha es una clausula, -alpha es una conjuncion de literales, asi
+ * que cada consulta es una llamada a solve() con esos literales como
+ * hipotesis, sin reconstruir nada y aprovechando lo aprendido en las
+ * consultas anteriores. Si alpha esta en forma clausal, se consulta cada
+ * clausula por separado.
+ *
+ * Las respuestas se guardan por clausula en una cache LRU. Como Clause
+ * compara conjuntos de literales, dos consultas que solo difieren en el
+ * orden o en literales repetidos comparten entrada. Al anadir clausulas a la
+ * base, lo que ya se implicaba se sigue implicando, asi que solo caducan las
+ * respuestas negativas: cada una guarda la generacion de la base en la que
+ * se calculo, y tell() solo tiene que pasar a la siguiente.
+ */
+public class KnowledgeBase {
+
+	private static final int DEFAULT_CACHE_SIZE = 100000;
+
+	/* Valor en la cache de las clausulas implicadas, que no caducan */
+	private static final long ENTAILED = -1;
+
+	private DimacsFormula symbols = new DimacsFormula();
+	private CDCLSat solver = new CDCLSat();
+	/* ENTAILED, o la generacion en la que se vio que no se implicaba */
+	private Map<Clause, Long> cache;
+	private long generation = 0;
+
+	private long queries = 0;
+	private long cacheHits = 0;
+
+	/**
+	 * Crea una base vacia.
+	 */
+	public KnowledgeBase() {
+		this(DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Crea una base vacia que guarda hasta cacheSize respuestas.
+	 */
+	public KnowledgeBase(final int cacheSize) {
+		this.cache = new LinkedHashMap<Clause, Long>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Clause, Long> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * Crea una base con las clausulas indicadas.
+	 */
+	public KnowledgeBase(List<Clause> clauses) {
+		this();
+		tellAll(clauses);
+	}
+
+	/**
+	 * Anade una clausula a la base.
+	 */
+	public synchronized void tell(Clause clause) {
+		solver.addClause(symbols.toLiterals(clause));
+		/* Solo las respuestas negativas pueden cambiar */
+		generation++;
+	}
+
+	/**
+	 * Anade todas las clausulas a la base.
+	 */
+	public void tellAll(Iterable<Clause> clauses) {
+		for (Clause clause : clauses) {
+			tell(clause);
+		}
+	}
+
+	/**
+	 * @return true si la base es satisfacible.
+	 */
+	public synchronized boolean isSatisfiable() {
+		return Boolean.TRUE.equals(solver.solve());
+	}
+
+	/**
+	 * @return true si la base implica la clausula alpha.
+	 */
+	public synchronized boolean ask(Clause alpha) {
+		queries++;
+		if (alpha.isTautology()) {
+			return true;
+		}
+		Long cached = cache.get(alpha);
+		if (cached != null && (cached == ENTAILED || cached == generation)) {
+			cacheHits++;
+			return cached == ENTAILED;
+		}
+
+		/*
+		 * Hipotesis: la negacion de cada literal. Los simbolos que no
+		 * aparecen en la base se pueden hacer falsos libremente, asi que no
+		 * hace falta fijarlos
+		 */
+		int[] assumptions = new int[alpha.getNumberLiterals()];
+		int n = 0;
+		for (Literal l : alpha.getLiterals()) {
+			if (symbols.hasVariable(l.getAtomicSentence())) {
+				assumptions[n++] = -symbols.toLiteral(l);
+			}
+		}
+		boolean entailed = Boolean.FALSE.equals(solver.solve(Arrays.copyOf(assumptions, n)));
+		cache.put(alpha, entailed ? ENTAILED : generation);
+		return entailed;
+	}
+
+	/**
+	 * @return true si la base implica todas las clausulas de alpha.
+	 */
+	public boolean ask(List<Clause> alpha) {
+		for (Clause clause : alpha) {
+			if (!ask(clause)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true si la base implica la sentencia alpha.
+	 */
+	public boolean ask(Sentence alpha) {
+		return ask(alpha.getClauses());
+	}
+
+	/**
+	 * @return numero de clausulas consultadas.
+	 */
+	public synchronized long getQueries() {
+		return queries;
+	}
+
+	/**
+	 * @return numero de consultas respondidas desde la cache.
+	 */
+	public synchronized long getCacheHits() {
+		return cacheHits;
+	}
+}
@@ -44,7 +44,7 @@ package algorithms;
  * then run a depth-first search from each node in the graph in the reverse
  * order in which they are visited, we will end up recovering all the SCCs.
  */
-import java.util.*; // For ArrayList, HashSet, HashMap
+import java.util.*; // For ArrayDeque, HashSet, HashMap
 
 import utils.DirectedGraph;
 
@@ -140,8 +140,10 @@ public final class Kosaraju {
     }
 
     /**
-     * Recursively explores the given node with a DFS, adding it to the output
-     * list once the exploration is complete.
+     * Explores the given node with a DFS, adding each node to the output
+     * list once its exploration is complete.  The search keeps its own
+     * stack of pending edge iterators instead of recursing, so that long
+     * implication chains do not overflow the call stack.
      *
      * @param node The node to start from.
      * @param g The graph to explore.
@@ -151,24 +153,34 @@ public final class Kosaraju {
     private static <T> void recExplore(T node, DirectedGraph<T> g,
                                        Stack<T> result, Set<T> visited) {
         /* If we've already been at this node, don't explore it again. */
-        if (visited.contains(node)) return;
-
-        /* Otherwise, mark that we've been here. */
-        visited.add(node);
-
-        /* Recursively explore all the node's children. */
-        for (T endpoint: g.edgesFrom(node))
-            recExplore(endpoint, g, result, visited);
-
-        /* We're done exploring this node, so add it to the list of visited
-         * nodes.
-         */
-        result.push(node);
+        if (!visited.add(node)) return;
+
+        /* The current DFS path, and the edges still to explore from each. */
+        Deque<T> path = new ArrayDeque<T>();
+        Deque<Iterator<T>> pending = new ArrayDeque<Iterator<T>>();
+        path.push(node);
+        pending.push(g.edgesFrom(node).iterator());
+
+        while (!pending.isEmpty()) {
+            Iterator<T> edges = pending.peek();
+            if (edges.hasNext()) {
+                /* Descend into the next unvisited child. */
+                T endpoint = edges.next();
+                if (visited.add(endpoint)) {
+                    path.push(endpoint);
+                    pending.push(g.edgesFrom(endpoint).iterator());
+                }
+            } else {
+                /* We're done exploring this node, so add it to the list. */
+                pending.pop();
+                result.push(path.pop());
+            }
+        }
     }
 
     /**
-     * Recursively marks all nodes reachable from the given node by a DFS with
-     * the current label.
+     * Marks all nodes reachable from the given node with the current label,
+     * using an explicit stack instead of recursion.
      *
      * @param node The starting point of the search.
      * @param g The graph in which to run the search.
@@ -178,16 +190,21 @@ public final class Kosaraju {
     private static <T> void markReachableNodes(T node, DirectedGraph<T> g,
                                                Map<T, Integer> result,
                                                int label) {
-        /* If we've visited this node before, stop the search. */
-        if (result.containsKey(node)) return;
+        Deque<T> worklist = new ArrayDeque<T>();
+        worklist.push(node);
+        while (!worklist.isEmpty()) {
+            T current = worklist.pop();
 
-        /* Otherwise label the node with the current label, since it's
-         * trivially reachable from itself.
-         */
-        result.put(node, label);
+            /* If we've visited this node before, skip it. */
+            if (result.containsKey(current)) continue;
 
-        /* Explore all nodes reachable from here. */
-        for (T endpoint: g.edgesFrom(node))
-            markReachableNodes(endpoint, g, result, label);
+            /* Otherwise label the node with the current label. */
+            result.put(current, label);
+
+            /* Explore all nodes reachable from here. */
+            for (T endpoint: g.edgesFrom(current))
+                if (!result.containsKey(endpoint))
+                    worklist.push(endpoint);
+        }
     }
 }
\ No newline at end of file
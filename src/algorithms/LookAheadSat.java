@@ -0,0 +1,392 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import utils.*;
+
+import static utils.DimacsFormula.index;
+
+/**
+ * Resolutor DPLL con anticipacion (look-ahead), al estilo de march.
+ *
+ * En cada nodo del arbol de busqueda se eligen las variables candidatas con
+ * mas apariciones y, para cada una, se asignan por separado sus dos
+ * literales y se propaga:
+ *
+ * - Si un literal lleva a conflicto es fallido, y su opuesto se fija en el
+ *   nodo. Si fallan los dos, el nodo no tiene solucion.
+ * - Los literales implicados por los dos lados tambien se fijan.
+ * - Si no, se mide cuanto reduce cada lado la formula (clausulas acortadas,
+ *   dando mas peso a las que quedan binarias), y se ramifica por la variable
+ *   cuyos dos lados reducen mas a la vez, empezando por el lado que menos
+ *   reduce, que es el que mas probablemente tiene solucion.
+ *
+ * Es mas lento por nodo que {@link CDCLSat}, pero explora arboles mucho mas
+ * pequenos, y suele ser mejor en formulas aleatorias pequenas y densas
+ * cerca del umbral de satisfacibilidad.
+ */
+public class LookAheadSat {
+
+	/* Proporcion de variables libres que se anticipan en cada nodo */
+	private static final double CANDIDATE_FRACTION = 0.1;
+	private static final int MIN_CANDIDATES = 10;
+
+	private int numVars;
+	private int[][] clauses;
+
+	/* Clausulas por literal vigilado y clausulas en las que aparece */
+	private int[][] watches;
+	private int[] watchCount;
+	private int[][] occurrences;
+
+	/* Variables de mas a menos apariciones */
+	private int[] order;
+
+	private Trail trail;
+
+	private int[] mark;
+	private int stamp = 0;
+
+	private boolean[] model = null;
+
+	private long decisions = 0;
+	private long failedLiterals = 0;
+	private long lookAheads = 0;
+
+	/**
+	 * Comprueba si la sentencia es satisfacible.
+	 */
+	public boolean isSatisfiable(Sentence s) {
+		return isSatisfiable(new DimacsFormula(s.getClauses()));
+	}
+
+	/**
+	 * Comprueba si la formula es satisfacible. Si se interrumpe el hilo,
+	 * abandona la busqueda y devuelve false.
+	 */
+	public boolean isSatisfiable(DimacsFormula formula) {
+		if (!load(formula)) {
+			return false;
+		}
+		return search();
+	}
+
+	/**
+	 * @return el modelo encontrado, indexado por variable, o null si la
+	 *         formula no es satisfacible.
+	 */
+	public boolean[] getModel() {
+		return model;
+	}
+
+	public long getDecisions() {
+		return decisions;
+	}
+
+	public long getFailedLiterals() {
+		return failedLiterals;
+	}
+
+	public long getLookAheads() {
+		return lookAheads;
+	}
+
+	/*
+	 * Carga la formula y propaga sus clausulas unitarias. Devuelve false si
+	 * ya es insatisfacible
+	 */
+	private boolean load(DimacsFormula formula) {
+		numVars = formula.getNumVariables();
+		trail = new Trail(numVars);
+		mark = new int[2 * numVars + 2];
+		watches = new int[2 * numVars + 2][4];
+		watchCount = new int[2 * numVars + 2];
+
+		int[] occurrenceCount = new int[2 * numVars + 2];
+		List<int[]> loaded = new ArrayList<int[]>();
+		List<Integer> units = new ArrayList<Integer>();
+		for (int[] clause : formula.getClauses()) {
+			/* Quita literales repetidos y descarta tautologias */
+			int[] lits = DimacsFormula.normalize(clause);
+			if (lits == null) {
+				continue;
+			}
+			if (lits.length == 0) {
+				return false;
+			}
+			if (lits.length == 1) {
+				units.add(lits[0]);
+				continue;
+			}
+			for (int lit : lits) {
+				occurrenceCount[index(lit)]++;
+			}
+			loaded.add(lits);
+		}
+
+		clauses = loaded.toArray(new int[loaded.size()][]);
+		occurrences = new int[2 * numVars + 2][];
+		for (int i = 0; i < occurrences.length; i++) {
+			occurrences[i] = new int[occurrenceCount[i]];
+		}
+		int[] filled = new int[2 * numVars + 2];
+		for (int c = 0; c < clauses.length; c++) {
+			for (int lit : clauses[c]) {
+				occurrences[index(lit)][filled[index(lit)]++] = c;
+			}
+			watch(clauses[c][0], c);
+			watch(clauses[c][1], c);
+		}
+
+		Integer[] byOccurrences = new Integer[numVars];
+		for (int v = 1; v <= numVars; v++) {
+			byOccurrences[v - 1] = v;
+		}
+		Arrays.sort(byOccurrences, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				int countA = occurrences[index(a)].length + occurrences[index(-a)].length;
+				int countB = occurrences[index(b)].length + occurrences[index(-b)].length;
+				return countB - countA;
+			}
+		});
+		order = new int[numVars];
+		for (int i = 0; i < numVars; i++) {
+			order[i] = byOccurrences[i];
+		}
+
+		for (int lit : units) {
+			int val = trail.valueOf(lit);
+			if (val < 0) {
+				return false;
+			}
+			if (val == 0) {
+				trail.assign(lit);
+			}
+		}
+		return propagate(0);
+	}
+
+	/*
+	 * Busqueda con vuelta atras cronologica. Cada nivel guarda la posicion
+	 * de la pila de asignaciones al entrar, su literal de decision y si ya
+	 * se ha probado el opuesto
+	 */
+	private boolean search() {
+		int[] levelStart = new int[numVars + 1];
+		int[] levelLiteral = new int[numVars + 1];
+		boolean[] flipped = new boolean[numVars + 1];
+		int level = 0;
+
+		while (true) {
+			if (Thread.currentThread().isInterrupted()) {
+				return false;
+			}
+			int branch = lookAhead();
+			if (branch == Integer.MAX_VALUE) {
+				model = new boolean[numVars + 1];
+				for (int v = 1; v <= numVars; v++) {
+					model[v] = trail.valueOf(v) > 0;
+				}
+				return true;
+			}
+			boolean conflict = branch == 0;
+			if (!conflict) {
+				decisions++;
+				levelStart[level] = trail.size();
+				levelLiteral[level] = branch;
+				flipped[level] = false;
+				level++;
+				trail.assign(branch);
+				conflict = !propagate(trail.size() - 1);
+			}
+			/* Vuelve al ultimo nivel cuyo opuesto queda por probar */
+			while (conflict) {
+				if (level == 0) {
+					return false;
+				}
+				level--;
+				trail.undo(levelStart[level]);
+				if (!flipped[level]) {
+					flipped[level] = true;
+					level++;
+					trail.assign(-levelLiteral[level - 1]);
+					conflict = !propagate(trail.size() - 1);
+				}
+			}
+		}
+	}
+
+	/*
+	 * Anticipa los literales candidatos. Devuelve el literal por el que
+	 * ramificar, 0 si el nodo no tiene solucion o Integer.MAX_VALUE si
+	 * todas las variables tienen valor
+	 */
+	private int lookAhead() {
+		boolean progress = true;
+		int best = Integer.MAX_VALUE;
+		while (progress) {
+			progress = false;
+			best = Integer.MAX_VALUE;
+			double bestScore = -1;
+
+			int free = numVars - trail.size();
+			if (free == 0) {
+				return Integer.MAX_VALUE;
+			}
+			int candidates = Math.min(free, Math.max(MIN_CANDIDATES, (int) (free * CANDIDATE_FRACTION)));
+			for (int i = 0; i < numVars && candidates > 0; i++) {
+				int v = order[i];
+				if (trail.valueOf(v) != 0) {
+					continue;
+				}
+				candidates--;
+				lookAheads++;
+
+				int start = trail.size();
+				double positive = tryLiteral(v);
+				stamp++;
+				for (int j = start; j < trail.size(); j++) {
+					mark[index(trail.get(j))] = stamp;
+				}
+				trail.undo(start);
+				double negative = tryLiteral(-v);
+				List<Integer> common = new ArrayList<Integer>();
+				if (positive >= 0 && negative >= 0) {
+					for (int j = start + 1; j < trail.size(); j++) {
+						if (mark[index(trail.get(j))] == stamp) {
+							common.add(trail.get(j));
+						}
+					}
+				}
+				trail.undo(start);
+
+				if (positive < 0 || negative < 0 || !common.isEmpty()) {
+					/* Literal fallido o implicado por los dos lados: se fija */
+					progress = true;
+					if (positive < 0 && negative < 0) {
+						return 0;
+					}
+					if (positive < 0 || negative < 0) {
+						failedLiterals++;
+						trail.assign(positive < 0 ? -v : v);
+					}
+					for (int lit : common) {
+						if (trail.valueOf(lit) == 0) {
+							trail.assign(lit);
+						}
+					}
+					if (!propagate(start)) {
+						return 0;
+					}
+					continue;
+				}
+
+				double score = 1024 * positive * negative + positive + negative;
+				if (score > bestScore) {
+					bestScore = score;
+					best = positive <= negative ? v : -v;
+				}
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Asigna un literal y propaga, midiendo la reduccion de la formula.
+	 * Devuelve -1 si hay conflicto
+	 */
+	private double tryLiteral(int lit) {
+		int start = trail.size();
+		trail.assign(lit);
+		if (!propagate(start)) {
+			return -1;
+		}
+		double reduction = 0;
+		for (int j = start; j < trail.size(); j++) {
+			for (int c : occurrences[index(-trail.get(j))]) {
+				int free = 0;
+				boolean satisfied = false;
+				for (int other : clauses[c]) {
+					int val = trail.valueOf(other);
+					if (val > 0) {
+						satisfied = true;
+						break;
+					}
+					if (val == 0) {
+						free++;
+					}
+				}
+				if (!satisfied) {
+					reduction += free == 2 ? 1 : free == 3 ? 0.2 : 0.05;
+				}
+			}
+		}
+		return reduction;
+	}
+
+	/*
+	 * Propagacion unitaria con dos literales vigilados desde la posicion
+	 * indicada de la pila. Devuelve false si alguna clausula queda falsa
+	 */
+	private boolean propagate(int from) {
+		for (int i = from; i < trail.size(); i++) {
+			int falseLit = -trail.get(i);
+			int fi = index(falseLit);
+			int[] list = watches[fi];
+			int kept = 0;
+			int count = watchCount[fi];
+			for (int w = 0; w < count; w++) {
+				int c = list[w];
+				int[] lits = clauses[c];
+				if (lits[0] == falseLit) {
+					lits[0] = lits[1];
+					lits[1] = falseLit;
+				}
+				if (trail.valueOf(lits[0]) > 0) {
+					list[kept++] = c;
+					continue;
+				}
+				/* Busca otro literal que vigilar */
+				boolean moved = false;
+				for (int k = 2; k < lits.length; k++) {
+					if (trail.valueOf(lits[k]) >= 0) {
+						lits[1] = lits[k];
+						lits[k] = falseLit;
+						watch(lits[1], c);
+						moved = true;
+						break;
+					}
+				}
+				if (moved) {
+					continue;
+				}
+				list[kept++] = c;
+				int val = trail.valueOf(lits[0]);
+				if (val < 0) {
+					/* Conflicto: se conservan las vigilancias restantes */
+					for (w++; w < count; w++) {
+						list[kept++] = list[w];
+					}
+					watchCount[fi] = kept;
+					return false;
+				}
+				if (val == 0) {
+					trail.assign(lits[0]);
+				}
+			}
+			watchCount[fi] = kept;
+		}
+		return true;
+	}
+
+	private void watch(int lit, int c) {
+		int i = index(lit);
+		if (watchCount[i] == watches[i].length) {
+			watches[i] = Arrays.copyOf(watches[i], watches[i].length * 2);
+		}
+		watches[i][watchCount[i]++] = c;
+	}
+}
@@ -0,0 +1,406 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import utils.*;
+
+/**
+ * Resuelve MaxSAT parcial con pesos: busca un modelo de las clausulas duras
+ * que minimice el peso total de las clausulas blandas que no se cumplen.
+ *
+ * Sigue el algoritmo OLL, guiado por nucleos sobre un {@link CDCLSat}
+ * incremental. Cada clausula blanda c se anade como (c + b), con una
+ * variable b nueva, y -b se pasa como hipotesis con el peso de la clausula
+ * (las unitarias se usan directamente como hipotesis). Mientras no hay
+ * modelo, el nucleo de hipotesis fallidas obliga a pagar al menos su peso
+ * minimo w, que se suma a la cota inferior y se resta de cada hipotesis del
+ * nucleo. A cambio se anade un totalizador que cuenta cuantas de ellas son
+ * falsas, y la hipotesis "a lo sumo una es falsa" con peso w; si esa
+ * hipotesis aparece en otro nucleo, se relaja a "a lo sumo dos", y asi
+ * sucesivamente.
+ *
+ * Con estratificacion, solo se pasan las hipotesis de peso mayor o igual a
+ * un umbral, que empieza en el peso maximo. Cada modelo que se encuentra
+ * por el camino es una solucion, cuyo coste da una cota superior; cuando
+ * hay modelo con todas las hipotesis, su coste es el optimo. Las cotas se
+ * comunican a un {@link Listener} a medida que mejoran, y la busqueda se
+ * puede interrumpir quedandose con la mejor solucion encontrada.
+ */
+public class MaxSat {
+
+	/**
+	 * Recibe las cotas del coste optimo cada vez que mejora alguna.
+	 */
+	public interface Listener {
+		void bounds(long lower, long upper);
+	}
+
+	/*
+	 * Totalizador: out[k] es cierta si al menos k de las entradas lo son.
+	 * Solo se codifica ese sentido, que es el que limitan las hipotesis
+	 */
+	private static final class Totalizer {
+		final int[] out;
+
+		Totalizer(int[] out) {
+			this.out = out;
+		}
+	}
+
+	private DimacsFormula formula;
+	private List<int[]> softClauses = new ArrayList<int[]>();
+	private List<Long> softWeights = new ArrayList<Long>();
+	private int trimIterations = 3;
+	private Listener listener = null;
+
+	private CDCLSat solver;
+	private int nextVar;
+
+	/* Peso pendiente de cada hipotesis, y totalizador del que sale cada una */
+	private Map<Integer, Long> weights;
+	private Map<Integer, Totalizer> sums;
+	private Map<Integer, Integer> bounds;
+
+	private long lower = 0;
+	private long upper = Long.MAX_VALUE;
+	private boolean[] best = null;
+	private boolean optimal = false;
+	private volatile boolean interrupted = false;
+
+	private long solverCalls = 0;
+	private long cores = 0;
+
+	/**
+	 * @param formula
+	 *            clausulas duras, que se deben cumplir.
+	 */
+	public MaxSat(DimacsFormula formula) {
+		this.formula = formula;
+	}
+
+	/**
+	 * Anade una clausula blanda. Sus variables deben ser las de la formula.
+	 *
+	 * @param weight
+	 *            coste de no cumplirla, mayor que cero.
+	 */
+	public void addSoftClause(int[] literals, long weight) {
+		softClauses.add(literals);
+		softWeights.add(weight);
+	}
+
+	/**
+	 * Numero maximo de veces que se vuelve a resolver con un nucleo para
+	 * reducirlo antes de relajarlo.
+	 */
+	public void setTrimIterations(int trimIterations) {
+		this.trimIterations = trimIterations;
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Pide que la busqueda termine lo antes posible. compute() devuelve
+	 * entonces la mejor solucion encontrada, que puede no ser optima.
+	 */
+	public void interrupt() {
+		interrupted = true;
+		CDCLSat current = solver;
+		if (current != null) {
+			current.interrupt();
+		}
+	}
+
+	/**
+	 * @return el mejor modelo encontrado, indexado por variable de la
+	 *         formula, o null si las clausulas duras son insatisfacibles o
+	 *         no se ha llegado a encontrar ninguno.
+	 */
+	public boolean[] compute() {
+		solver = new CDCLSat();
+		if (interrupted) {
+			solver.interrupt();
+		}
+		solver.addFormula(formula);
+		nextVar = formula.getNumVariables();
+		weights = new LinkedHashMap<Integer, Long>();
+		sums = new HashMap<Integer, Totalizer>();
+		bounds = new HashMap<Integer, Integer>();
+		lower = 0;
+		upper = Long.MAX_VALUE;
+		best = null;
+		optimal = false;
+		solverCalls = 0;
+		cores = 0;
+
+		for (int i = 0; i < softClauses.size(); i++) {
+			int[] clause = softClauses.get(i);
+			long weight = softWeights.get(i);
+			if (clause.length == 0) {
+				/* Nunca se cumple */
+				lower += weight;
+			} else if (clause.length == 1) {
+				addWeight(clause[0], weight);
+			} else {
+				int b = ++nextVar;
+				int[] relaxed = Arrays.copyOf(clause, clause.length + 1);
+				relaxed[clause.length] = b;
+				solver.addClause(relaxed);
+				addWeight(-b, weight);
+			}
+		}
+
+		/* Primero, una solucion cualquiera de las clausulas duras */
+		solverCalls++;
+		Boolean status = solver.solve();
+		if (!Boolean.TRUE.equals(status)) {
+			optimal = Boolean.FALSE.equals(status);
+			return null;
+		}
+		improve(solver.getModel());
+
+		long stratum = maxWeight(Long.MAX_VALUE);
+		while (lower < upper) {
+			int[] assumptions = assumptions(stratum);
+			solverCalls++;
+			status = solver.solve(assumptions);
+			if (status == null) {
+				return best;
+			}
+			if (status) {
+				improve(solver.getModel());
+				long next = maxWeight(stratum);
+				if (next == 0) {
+					/* Todas las hipotesis se cumplen: el coste es la cota inferior */
+					break;
+				}
+				stratum = next;
+			} else {
+				int[] core = trim(solver.getFailedAssumptions());
+				if (core == null) {
+					return best;
+				}
+				if (core.length == 0) {
+					/* No deberia pasar: las clausulas duras tienen modelo */
+					break;
+				}
+				relax(core);
+			}
+		}
+		optimal = true;
+		if (lower != upper) {
+			lower = upper;
+			report();
+		}
+		return best;
+	}
+
+	/**
+	 * @return coste de la mejor solucion encontrada, o Long.MAX_VALUE si no
+	 *         hay ninguna.
+	 */
+	public long getUpperBound() {
+		return upper;
+	}
+
+	/**
+	 * @return coste por debajo del cual se sabe que no hay solucion.
+	 */
+	public long getLowerBound() {
+		return lower;
+	}
+
+	/**
+	 * @return true si la busqueda ha terminado: la mejor solucion es optima,
+	 *         o las clausulas duras no tienen modelo.
+	 */
+	public boolean isOptimal() {
+		return optimal;
+	}
+
+	public long getSolverCalls() {
+		return solverCalls;
+	}
+
+	/**
+	 * @return numero de nucleos relajados.
+	 */
+	public long getCores() {
+		return cores;
+	}
+
+	/**
+	 * @return coste del modelo: peso de las clausulas blandas que no cumple.
+	 */
+	public long cost(boolean[] model) {
+		long cost = 0;
+		for (int i = 0; i < softClauses.size(); i++) {
+			boolean satisfied = false;
+			for (int lit : softClauses.get(i)) {
+				if (model[Math.abs(lit)] == lit > 0) {
+					satisfied = true;
+					break;
+				}
+			}
+			if (!satisfied) {
+				cost += softWeights.get(i);
+			}
+		}
+		return cost;
+	}
+
+	//
+	// NUCLEOS
+	//
+
+	/*
+	 * Paga el peso minimo del nucleo y relaja sus hipotesis
+	 */
+	private void relax(int[] core) {
+		cores++;
+		long min = Long.MAX_VALUE;
+		for (int a : core) {
+			min = Math.min(min, weights.get(a));
+		}
+		lower += min;
+		for (int a : core) {
+			addWeight(a, -min);
+			Totalizer sum = sums.get(a);
+			if (sum != null) {
+				/* Se permite una entrada falsa mas en el totalizador */
+				int k = bounds.get(a) + 1;
+				if (k < sum.out.length) {
+					addSum(-sum.out[k], sum, k, min);
+				}
+			}
+		}
+		if (core.length > 1) {
+			int[] inputs = new int[core.length];
+			for (int i = 0; i < core.length; i++) {
+				inputs[i] = -core[i];
+			}
+			Totalizer sum = new Totalizer(totalizer(inputs));
+			/* Alguna es falsa: se pide que no lo sean dos */
+			addSum(-sum.out[2], sum, 2, min);
+		}
+		report();
+	}
+
+	/*
+	 * Vuelve a resolver con las hipotesis del nucleo, que suele dar uno mas
+	 * pequeno. Devuelve null si se interrumpe la busqueda
+	 */
+	private int[] trim(int[] core) {
+		for (int i = 0; i < trimIterations && core.length > 1; i++) {
+			solverCalls++;
+			Boolean status = solver.solve(core);
+			if (status == null) {
+				return null;
+			}
+			int[] trimmed = solver.getFailedAssumptions();
+			if (status || trimmed.length == core.length) {
+				break;
+			}
+			core = trimmed;
+		}
+		return core;
+	}
+
+	/*
+	 * Codifica un totalizador sobre las entradas. out[k], con 1 <= k <= n,
+	 * queda implicada si al menos k entradas son ciertas; out[0] no se usa
+	 */
+	private int[] totalizer(int[] inputs) {
+		if (inputs.length == 1) {
+			return new int[] { 0, inputs[0] };
+		}
+		int half = inputs.length / 2;
+		int[] left = totalizer(Arrays.copyOfRange(inputs, 0, half));
+		int[] right = totalizer(Arrays.copyOfRange(inputs, half, inputs.length));
+		int[] out = new int[inputs.length + 1];
+		for (int k = 1; k <= inputs.length; k++) {
+			out[k] = ++nextVar;
+		}
+		for (int i = 0; i < left.length; i++) {
+			for (int j = 0; j < right.length; j++) {
+				if (i + j == 0) {
+					continue;
+				}
+				if (i == 0) {
+					solver.addClause(-right[j], out[j]);
+				} else if (j == 0) {
+					solver.addClause(-left[i], out[i]);
+				} else {
+					solver.addClause(-left[i], -right[j], out[i + j]);
+				}
+			}
+		}
+		return out;
+	}
+
+	private void addSum(int assumption, Totalizer sum, int k, long weight) {
+		sums.put(assumption, sum);
+		bounds.put(assumption, k);
+		addWeight(assumption, weight);
+	}
+
+	private void addWeight(int assumption, long weight) {
+		Long old = weights.get(assumption);
+		long updated = (old == null ? 0 : old) + weight;
+		if (updated > 0) {
+			weights.put(assumption, updated);
+		} else {
+			weights.remove(assumption);
+		}
+	}
+
+	//
+	// ESTRATIFICACION
+	//
+
+	private int[] assumptions(long stratum) {
+		int[] result = new int[weights.size()];
+		int n = 0;
+		for (Map.Entry<Integer, Long> entry : weights.entrySet()) {
+			if (entry.getValue() >= stratum) {
+				result[n++] = entry.getKey();
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	/*
+	 * Mayor peso pendiente por debajo de limit, o 0 si no hay ninguno
+	 */
+	private long maxWeight(long limit) {
+		long max = 0;
+		for (long weight : weights.values()) {
+			if (weight < limit && weight > max) {
+				max = weight;
+			}
+		}
+		return max;
+	}
+
+	private void improve(boolean[] model) {
+		long cost = cost(model);
+		if (cost < upper) {
+			upper = cost;
+			best = Arrays.copyOf(model, formula.getNumVariables() + 1);
+			report();
+		}
+	}
+
+	private void report() {
+		if (listener != null) {
+			listener.bounds(lower, upper);
+		}
+	}
+}
@@ -0,0 +1,372 @@
+package algorithms;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import utils.*;
+
+import static utils.DimacsFormula.index;
+
+/**
+ * Contador exacto de modelos (#SAT) basado en DPLL.
+ *
+ * Tras cada decision y su propagacion, las clausulas aun no satisfechas se
+ * dividen en componentes que no comparten variables; el numero de modelos
+ * es el producto de los de cada componente, multiplicado por 2 por cada
+ * variable que ha quedado libre. La cuenta de cada componente se guarda en
+ * una cache indexada por su forma canonica (sus clausulas residuales,
+ * ordenadas), porque las mismas componentes aparecen una y otra vez en
+ * ramas distintas del arbol. La cache tiene un limite de memoria y descarta
+ * las entradas usadas hace mas tiempo.
+ */
+public class ModelCounter {
+
+	/* Clave de la cache: clausulas residuales separadas por ceros */
+	private static final class Key {
+		final int[] data;
+		final int hash;
+
+		Key(int[] data) {
+			this.data = data;
+			this.hash = Arrays.hashCode(data);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(data, ((Key) o).data);
+		}
+	}
+
+	/* Bytes aproximados que ocupa una entrada, ademas de sus datos */
+	private static final int ENTRY_OVERHEAD = 96;
+
+	private int numVars;
+	private int[][] clauses;
+	private int[][] occurrences;
+
+	private Trail trail;
+
+	/* Marcas para recorrer componentes sin reservar memoria */
+	private int[] varMark;
+	private int[] clauseMark;
+	private int[] score;
+	private int stamp = 0;
+
+	private LinkedHashMap<Key, BigInteger> cache = new LinkedHashMap<Key, BigInteger>(1024, 0.75f, true);
+	private long cacheBytes = 0;
+	private long maxCacheBytes;
+
+	private long decisions = 0;
+	private long cacheHits = 0;
+	private long evictions = 0;
+
+	/**
+	 * @param maxCacheBytes
+	 *            memoria aproximada maxima de la cache de componentes.
+	 */
+	public ModelCounter(long maxCacheBytes) {
+		this.maxCacheBytes = maxCacheBytes;
+	}
+
+	/**
+	 * Cuenta los modelos de la formula sobre todas sus variables.
+	 */
+	public BigInteger count(DimacsFormula formula) {
+		if (!load(formula)) {
+			return BigInteger.ZERO;
+		}
+		List<Integer> all = new ArrayList<Integer>();
+		for (int c = 0; c < clauses.length; c++) {
+			all.add(c);
+		}
+		return countResidual(all, numVars - trail.size());
+	}
+
+	public long getDecisions() {
+		return decisions;
+	}
+
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	public int getCacheEntries() {
+		return cache.size();
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/*
+	 * Carga la formula y propaga sus clausulas unitarias. Devuelve false si
+	 * no tiene modelos
+	 */
+	private boolean load(DimacsFormula formula) {
+		numVars = formula.getNumVariables();
+		trail = new Trail(numVars);
+		varMark = new int[numVars + 1];
+		score = new int[numVars + 1];
+		List<int[]> loaded = new ArrayList<int[]>();
+		for (int[] clause : formula.getClauses()) {
+			int[] lits = DimacsFormula.normalize(clause);
+			if (lits == null) {
+				continue;
+			}
+			if (lits.length == 0) {
+				return false;
+			}
+			loaded.add(lits);
+		}
+		clauses = loaded.toArray(new int[loaded.size()][]);
+		clauseMark = new int[clauses.length];
+
+		int[] count = new int[2 * numVars + 2];
+		for (int[] clause : clauses) {
+			for (int lit : clause) {
+				count[index(lit)]++;
+			}
+		}
+		occurrences = new int[2 * numVars + 2][];
+		for (int i = 0; i < occurrences.length; i++) {
+			occurrences[i] = new int[count[i]];
+			count[i] = 0;
+		}
+		for (int c = 0; c < clauses.length; c++) {
+			for (int lit : clauses[c]) {
+				occurrences[index(lit)][count[index(lit)]++] = c;
+			}
+		}
+
+		for (int[] clause : clauses) {
+			if (clause.length == 1) {
+				int val = trail.valueOf(clause[0]);
+				if (val < 0) {
+					return false;
+				}
+				if (val == 0) {
+					int start = trail.size();
+					trail.assign(clause[0]);
+					if (!trail.propagate(start, clauses, occurrences)) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Cuenta los modelos de las clausulas aun no satisfechas de la lista
+	 * sobre un ambito de scope variables sin valor: se dividen en
+	 * componentes y las variables del ambito que no aparecen en ninguna
+	 * quedan libres
+	 */
+	private BigInteger countResidual(List<Integer> clauseIds, int scope) {
+		BigInteger total = BigInteger.ONE;
+		int free = scope;
+		for (List<Integer> component : components(clauseIds)) {
+			free -= countVariables(component);
+			BigInteger count = countComponent(component);
+			if (count.signum() == 0) {
+				return BigInteger.ZERO;
+			}
+			total = total.multiply(count);
+		}
+		return total.shiftLeft(free);
+	}
+
+	/*
+	 * Cuenta los modelos de una componente conexa, sobre sus variables
+	 */
+	private BigInteger countComponent(List<Integer> component) {
+		Key key = canonicalKey(component);
+		BigInteger cached = cache.get(key);
+		if (cached != null) {
+			cacheHits++;
+			return cached;
+		}
+
+		int v = branchVariable(component);
+		int scope = countVariables(component);
+		BigInteger total = BigInteger.ZERO;
+		for (int lit : new int[] { v, -v }) {
+			decisions++;
+			int start = trail.size();
+			trail.assign(lit);
+			if (trail.propagate(start, clauses, occurrences)) {
+				total = total.add(countResidual(component, scope - (trail.size() - start)));
+			}
+			trail.undo(start);
+		}
+
+		store(key, total);
+		return total;
+	}
+
+	/*
+	 * Divide las clausulas no satisfechas en componentes conexas por las
+	 * variables sin valor
+	 */
+	private List<List<Integer>> components(List<Integer> clauseIds) {
+		List<List<Integer>> result = new ArrayList<List<Integer>>();
+		stamp++;
+		for (int start : clauseIds) {
+			if (clauseMark[start] == stamp || isSatisfied(start)) {
+				continue;
+			}
+			List<Integer> component = new ArrayList<Integer>();
+			clauseMark[start] = stamp;
+			component.add(start);
+			for (int i = 0; i < component.size(); i++) {
+				for (int lit : clauses[component.get(i)]) {
+					int v = Math.abs(lit);
+					if (trail.valueOf(v) != 0 || varMark[v] == stamp) {
+						continue;
+					}
+					varMark[v] = stamp;
+					for (int[] occ : new int[][] { occurrences[index(v)], occurrences[index(-v)] }) {
+						for (int c : occ) {
+							if (clauseMark[c] != stamp && !isSatisfied(c)) {
+								clauseMark[c] = stamp;
+								component.add(c);
+							}
+						}
+					}
+				}
+			}
+			result.add(component);
+		}
+		return result;
+	}
+
+	private int countVariables(List<Integer> component) {
+		stamp++;
+		int count = 0;
+		for (int c : component) {
+			for (int lit : clauses[c]) {
+				int v = Math.abs(lit);
+				if (trail.valueOf(v) == 0 && varMark[v] != stamp) {
+					varMark[v] = stamp;
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Variable sin valor con mas apariciones en las clausulas residuales de
+	 * la componente, dando mas peso a las mas cortas
+	 */
+	private int branchVariable(List<Integer> component) {
+		stamp++;
+		for (int c : component) {
+			int free = 0;
+			for (int lit : clauses[c]) {
+				if (trail.valueOf(lit) == 0) {
+					free++;
+				}
+			}
+			int weight = free <= 2 ? 4 : free == 3 ? 2 : 1;
+			for (int lit : clauses[c]) {
+				int v = Math.abs(lit);
+				if (trail.valueOf(v) == 0) {
+					if (varMark[v] != stamp) {
+						varMark[v] = stamp;
+						score[v] = 0;
+					}
+					score[v] += weight;
+				}
+			}
+		}
+		int best = 0;
+		for (int c : component) {
+			for (int lit : clauses[c]) {
+				int v = Math.abs(lit);
+				if (trail.valueOf(v) == 0 && (best == 0 || score[v] > score[best])) {
+					best = v;
+				}
+			}
+		}
+		return best;
+	}
+
+	/*
+	 * Forma canonica de una componente: sus clausulas sin los literales
+	 * falsos, ordenadas, y separadas por ceros
+	 */
+	private Key canonicalKey(List<Integer> component) {
+		List<int[]> residual = new ArrayList<int[]>(component.size());
+		int length = 0;
+		for (int c : component) {
+			int[] lits = new int[clauses[c].length];
+			int n = 0;
+			for (int lit : clauses[c]) {
+				if (trail.valueOf(lit) == 0) {
+					lits[n++] = lit;
+				}
+			}
+			residual.add(Arrays.copyOf(lits, n));
+			length += n + 1;
+		}
+		Collections.sort(residual, new Comparator<int[]>() {
+			public int compare(int[] a, int[] b) {
+				for (int i = 0; i < a.length && i < b.length; i++) {
+					if (a[i] != b[i]) {
+						return a[i] < b[i] ? -1 : 1;
+					}
+				}
+				return a.length - b.length;
+			}
+		});
+		int[] data = new int[length];
+		int k = 0;
+		for (int[] lits : residual) {
+			System.arraycopy(lits, 0, data, k, lits.length);
+			k += lits.length + 1;
+		}
+		return new Key(data);
+	}
+
+	/*
+	 * Guarda una cuenta en la cache, descartando las menos recientes si se
+	 * supera el limite de memoria
+	 */
+	private void store(Key key, BigInteger count) {
+		cache.put(key, count);
+		cacheBytes += size(key, count);
+		Iterator<Map.Entry<Key, BigInteger>> eldest = cache.entrySet().iterator();
+		while (cacheBytes > maxCacheBytes && eldest.hasNext()) {
+			Map.Entry<Key, BigInteger> e = eldest.next();
+			cacheBytes -= size(e.getKey(), e.getValue());
+			eldest.remove();
+			evictions++;
+		}
+	}
+
+	private static long size(Key key, BigInteger count) {
+		return ENTRY_OVERHEAD + 4L * key.data.length + count.bitLength() / 8;
+	}
+
+	private boolean isSatisfied(int c) {
+		for (int lit : clauses[c]) {
+			if (trail.valueOf(lit) > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
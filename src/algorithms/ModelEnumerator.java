@@ -0,0 +1,98 @@
+package algorithms;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import utils.*;
+
+/**
+ * Enumera todos los modelos de una formula bajo demanda.
+ *
+ * Cada modelo se busca solo cuando se pide con hasNext() o next(), sobre un
+ * mismo {@link CDCLSat} incremental que conserva lo aprendido entre un modelo
+ * y el siguiente. Al encontrar uno se anade una clausula de bloqueo con la
+ * negacion de sus decisiones: como el resto del modelo se deduce de ellas
+ * por propagacion, excluye ese modelo y ningun otro, y es mucho mas corta
+ * que negar el modelo entero.
+ *
+ * Quien consume los modelos marca el ritmo: si deja de pedirlos, el
+ * resolutor no busca ninguno mas.
+ */
+public class ModelEnumerator implements Iterator<Model>, Iterable<Model> {
+
+	private DimacsFormula formula;
+	private CDCLSat solver = new CDCLSat();
+
+	/* Modelo ya encontrado y aun no devuelto */
+	private boolean[] pending = null;
+	private boolean exhausted = false;
+
+	private long count = 0;
+
+	public ModelEnumerator(DimacsFormula formula) {
+		this.formula = formula;
+		this.exhausted = !solver.addFormula(formula);
+	}
+
+	public ModelEnumerator(Sentence s) {
+		this(new DimacsFormula(s.getClauses()));
+	}
+
+	public Iterator<Model> iterator() {
+		return this;
+	}
+
+	/**
+	 * Busca el siguiente modelo si aun no se ha buscado.
+	 */
+	public boolean hasNext() {
+		if (pending == null && !exhausted) {
+			if (Boolean.TRUE.equals(solver.solve())) {
+				pending = solver.getModel();
+				int[] decisions = solver.getModelDecisions();
+				int[] blocking = new int[decisions.length];
+				for (int i = 0; i < decisions.length; i++) {
+					blocking[i] = -decisions[i];
+				}
+				/* Sin decisiones el modelo era el unico que quedaba */
+				if (!solver.addClause(blocking)) {
+					exhausted = true;
+				}
+			} else {
+				exhausted = true;
+			}
+		}
+		return pending != null;
+	}
+
+	/**
+	 * @return el siguiente modelo, como valores indexados por variable.
+	 */
+	public boolean[] nextValues() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		boolean[] values = pending;
+		pending = null;
+		count++;
+		return values;
+	}
+
+	public Model next() {
+		return formula.toModel(nextValues());
+	}
+
+	/**
+	 * @return numero de modelos devueltos hasta ahora.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return numero de conflictos del resolutor en toda la enumeracion.
+	 */
+	public long getConflicts() {
+		return solver.getConflicts();
+	}
+}
@@ -0,0 +1,138 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import utils.*;
+
+/**
+ * Portfolio de resolutores sistematicos: lanza en paralelo varias
+ * instancias de {@link CDCLSat} con configuraciones distintas (orden de
+ * variables, polaridad, semilla y reinicios) sobre la misma formula, se
+ * queda con la primera respuesta definitiva y cancela el resto. Las
+ * configuraciones se pasan entre si las clausulas cortas que aprenden a
+ * traves de un {@link ClauseExchange}.
+ */
+public class PortfolioSat {
+
+	private List<CDCLSat.Config> configs;
+	private int threads;
+
+	private boolean sharing = true;
+
+	private CDCLSat winner = null;
+
+	/**
+	 * @param configs
+	 *            configuraciones a ejecutar.
+	 * @param threads
+	 *            numero de hilos; si es menor que el numero de
+	 *            configuraciones, las que no caben esperan a que acabe otra.
+	 */
+	public PortfolioSat(List<CDCLSat.Config> configs, int threads) {
+		this.configs = configs;
+		this.threads = Math.max(1, Math.min(threads, configs.size()));
+	}
+
+	/**
+	 * Crea un portfolio de n configuraciones diversificadas, una por hilo.
+	 */
+	public PortfolioSat(int n) {
+		this(diversify(n), n);
+	}
+
+	/**
+	 * Activa o desactiva el intercambio de clausulas cortas entre las
+	 * configuraciones (activado por defecto).
+	 */
+	public void setClauseSharing(boolean sharing) {
+		this.sharing = sharing;
+	}
+
+	/**
+	 * Devuelve n configuraciones distintas. Las primeras cubren las
+	 * combinaciones mas utiles de orden y polaridad; el resto varian la
+	 * semilla, la frecuencia de reinicios y las decisiones aleatorias.
+	 */
+	public static List<CDCLSat.Config> diversify(int n) {
+		List<CDCLSat.Config> configs = new ArrayList<CDCLSat.Config>();
+		CDCLSat.Config[] base = {
+			new CDCLSat.Config("vsids-neg", CDCLSat.Config.Order.ACTIVITY, CDCLSat.Config.Polarity.FALSE, 0, 100, 0),
+			new CDCLSat.Config("vsids-pos", CDCLSat.Config.Order.ACTIVITY, CDCLSat.Config.Polarity.TRUE, 1, 100, 0),
+			new CDCLSat.Config("random", CDCLSat.Config.Order.RANDOM, CDCLSat.Config.Polarity.RANDOM, 2, 50, 0.02),
+			new CDCLSat.Config("input-order", CDCLSat.Config.Order.INPUT, CDCLSat.Config.Polarity.FALSE, 3, 512, 0),
+			new CDCLSat.Config("slow-restarts", CDCLSat.Config.Order.ACTIVITY, CDCLSat.Config.Polarity.RANDOM, 4, 1000, 0),
+		};
+		for (int i = 0; i < n; i++) {
+			if (i < base.length) {
+				configs.add(base[i]);
+			} else {
+				configs.add(new CDCLSat.Config("seed-" + i, CDCLSat.Config.Order.RANDOM,
+						CDCLSat.Config.Polarity.RANDOM, i, 50 + 50 * (i % 4), 0.01 * (i % 3)));
+			}
+		}
+		return configs;
+	}
+
+	/**
+	 * Resuelve la formula con todas las configuraciones a la vez.
+	 *
+	 * @return true si es satisfacible, false si no lo es, o null si se ha
+	 *         interrumpido antes de que ninguna configuracion respondiera.
+	 */
+	public Boolean isSatisfiable(final DimacsFormula formula) throws InterruptedException {
+		final List<CDCLSat> solvers = new ArrayList<CDCLSat>();
+		ClauseExchange exchange = sharing ? new ClauseExchange(configs.size()) : null;
+		for (CDCLSat.Config config : configs) {
+			CDCLSat solver = new CDCLSat(config);
+			if (exchange != null) {
+				solver.setClauseExchange(exchange.connect());
+			}
+			solvers.add(solver);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CompletionService<CDCLSat> completion = new ExecutorCompletionService<CDCLSat>(executor);
+		try {
+			for (final CDCLSat solver : solvers) {
+				completion.submit(new Callable<CDCLSat>() {
+					public CDCLSat call() {
+						solver.addFormula(formula);
+						return solver.solve() != null ? solver : null;
+					}
+				});
+			}
+
+			/* La primera respuesta definitiva gana */
+			for (int i = 0; i < solvers.size(); i++) {
+				CDCLSat finished = completion.take().get();
+				if (finished != null) {
+					winner = finished;
+					return finished.getModel() != null;
+				}
+			}
+			return null;
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			for (CDCLSat solver : solvers) {
+				solver.interrupt();
+			}
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return el resolutor que dio la respuesta, con su configuracion,
+	 *         modelo y estadisticas, o null si ninguno respondio.
+	 */
+	public CDCLSat getWinner() {
+		return winner;
+	}
+}
@@ -0,0 +1,606 @@
+package algorithms;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import utils.*;
+
+import static utils.DimacsFormula.index;
+
+/**
+ * Preprocesado de formulas CNF al estilo de SatELite, antes de la busqueda:
+ *
+ * - Propagacion de las clausulas unitarias.
+ * - Subsuncion: si C esta contenida en D, D sobra.
+ * - Autosubsuncion: si C esta contenida en D salvo un literal que aparece
+ *   negado en D, ese literal se puede quitar de D.
+ * - Eliminacion acotada de variables: una variable v se sustituye por todas
+ *   las resolventes entre las clausulas con v y las clausulas con -v, siempre
+ *   que no haya mas resolventes que clausulas eliminadas (mas un margen
+ *   configurable).
+ * - Eliminacion de clausulas bloqueadas: C esta bloqueada por su literal l
+ *   si todas sus resolventes sobre l son tautologias. Quitarla no cambia la
+ *   satisfacibilidad.
+ *
+ * Las clausulas eliminadas se guardan en una pila con la que se reconstruye
+ * un modelo de la formula original a partir de uno de la simplificada.
+ */
+public class Preprocessor {
+
+	/* Variables con mas apariciones que esto no se intentan eliminar */
+	private static final int MAX_OCCURRENCES = 64;
+
+	/* Longitud maxima de las resolventes al eliminar una variable */
+	private static final int MAX_RESOLVENT_LENGTH = 20;
+
+	private static final class ClauseRef {
+		int[] lits;
+		long signature;
+		boolean removed = false;
+		boolean queued = false;
+
+		ClauseRef(int[] lits) {
+			this.lits = lits;
+			this.signature = signature(lits);
+		}
+	}
+
+	private DimacsFormula formula;
+	private int numVars;
+
+	private List<ClauseRef> clauses = new ArrayList<ClauseRef>();
+	/*
+	 * Clausulas de cada literal. Las quitadas solo se marcan, y se descartan
+	 * de la lista al recorrerla; counts lleva las que siguen en la formula
+	 */
+	private List<List<ClauseRef>> occurrences;
+	private int[] counts;
+
+	private ArrayDeque<ClauseRef> subsumptionQueue = new ArrayDeque<ClauseRef>();
+	private ArrayDeque<Integer> units = new ArrayDeque<Integer>();
+
+	/* Valor de cada variable fijado por propagacion: 1, -1 o 0 si no tiene */
+	private int[] value;
+	private boolean[] eliminated;
+	private boolean[] frozen;
+
+	/* Pila de reconstruccion: en cada clausula, lits[0] es el pivote */
+	private List<int[]> stack = new ArrayList<int[]>();
+
+	private int[] marks;
+	private int stamp = 0;
+
+	private boolean unsatisfiable = false;
+	private int growthBound = 0;
+	private boolean blockedClauseElimination = true;
+
+	private int subsumed = 0;
+	private int strengthened = 0;
+	private int eliminatedVariables = 0;
+	private int fixedVariables = 0;
+	private int blocked = 0;
+
+	public Preprocessor(DimacsFormula formula) {
+		this.formula = formula;
+		this.numVars = formula.getNumVariables();
+		this.occurrences = new ArrayList<List<ClauseRef>>(2 * numVars + 2);
+		for (int i = 0; i < 2 * numVars + 2; i++) {
+			occurrences.add(new ArrayList<ClauseRef>());
+		}
+		this.counts = new int[2 * numVars + 2];
+		this.value = new int[numVars + 1];
+		this.eliminated = new boolean[numVars + 1];
+		this.frozen = new boolean[numVars + 1];
+		this.marks = new int[2 * numVars + 2];
+	}
+
+	/**
+	 * Numero de clausulas que puede crecer la formula al eliminar una
+	 * variable (0 por defecto: la formula nunca crece).
+	 */
+	public void setGrowthBound(int growthBound) {
+		this.growthBound = growthBound;
+	}
+
+	/**
+	 * Activa o desactiva la eliminacion de clausulas bloqueadas (activada
+	 * por defecto).
+	 */
+	public void setBlockedClauseElimination(boolean blockedClauseElimination) {
+		this.blockedClauseElimination = blockedClauseElimination;
+	}
+
+	/**
+	 * Impide que se elimine la variable v, por ejemplo porque se va a usar
+	 * en hipotesis o en clausulas anadidas despues.
+	 */
+	public void freeze(int v) {
+		frozen[v] = true;
+	}
+
+	/**
+	 * Simplifica la formula.
+	 *
+	 * @return una formula equisatisfacible con la misma numeracion de
+	 *         variables. Si se descubre que es insatisfacible, contiene la
+	 *         clausula vacia.
+	 */
+	public DimacsFormula simplify() {
+		for (int[] clause : formula.getClauses()) {
+			addClause(clause);
+		}
+		propagate();
+
+		boolean progress = true;
+		while (progress && !unsatisfiable) {
+			subsumeQueued();
+			progress = false;
+			for (int v : eliminationOrder()) {
+				if (unsatisfiable) {
+					break;
+				}
+				if (!eliminated[v] && value[v] == 0 && eliminate(v)) {
+					progress = true;
+					propagate();
+				}
+			}
+		}
+		if (blockedClauseElimination && !unsatisfiable) {
+			eliminateBlocked();
+		}
+
+		DimacsFormula simplified = new DimacsFormula();
+		for (int v = 1; v <= numVars; v++) {
+			simplified.getVariable(formula.getSymbol(v));
+		}
+		if (unsatisfiable) {
+			simplified.addClause(new int[0]);
+			return simplified;
+		}
+		for (ClauseRef c : clauses) {
+			if (!c.removed) {
+				simplified.addClause(c.lits);
+			}
+		}
+		return simplified;
+	}
+
+	/**
+	 * Extiende un modelo de la formula simplificada a la original, dando
+	 * valor a las variables eliminadas o fijadas por el preprocesado.
+	 *
+	 * @param model
+	 *            valores indexados por variable (la posicion 0 no se usa).
+	 */
+	public boolean[] extendModel(boolean[] model) {
+		boolean[] extended = Arrays.copyOf(model, Math.max(model.length, numVars + 1));
+		for (int i = stack.size() - 1; i >= 0; i--) {
+			int[] clause = stack.get(i);
+			boolean satisfied = false;
+			for (int j = 1; j < clause.length && !satisfied; j++) {
+				satisfied = extended[Math.abs(clause[j])] == clause[j] > 0;
+			}
+			if (!satisfied) {
+				extended[Math.abs(clause[0])] = clause[0] > 0;
+			}
+		}
+		return extended;
+	}
+
+	/**
+	 * @return true si el preprocesado ha demostrado que la formula es
+	 *         insatisfacible.
+	 */
+	public boolean isUnsatisfiable() {
+		return unsatisfiable;
+	}
+
+	public int getEliminatedVariables() {
+		return eliminatedVariables;
+	}
+
+	public int getFixedVariables() {
+		return fixedVariables;
+	}
+
+	public int getSubsumedClauses() {
+		return subsumed;
+	}
+
+	public int getStrengthenedClauses() {
+		return strengthened;
+	}
+
+	public int getBlockedClauses() {
+		return blocked;
+	}
+
+	@Override
+	public String toString() {
+		int remaining = 0;
+		for (ClauseRef c : clauses) {
+			if (!c.removed) {
+				remaining++;
+			}
+		}
+		return eliminatedVariables + " variables eliminadas y " + fixedVariables + " fijadas de " + numVars
+				+ ", " + subsumed + " clausulas subsumidas, " + strengthened + " reforzadas, " + blocked
+				+ " bloqueadas ("
+				+ formula.getNumClauses() + " -> " + remaining + " clausulas)";
+	}
+
+	/*
+	 * Anade una clausula quitando literales repetidos. Las tautologias se
+	 * ignoran y las unitarias se encolan para propagarlas
+	 */
+	private void addClause(int[] literals) {
+		int[] lits = DimacsFormula.normalize(literals);
+		if (lits == null) {
+			return;
+		}
+		if (lits.length == 0) {
+			unsatisfiable = true;
+			return;
+		}
+		if (lits.length == 1) {
+			units.add(lits[0]);
+		}
+		ClauseRef c = new ClauseRef(lits);
+		clauses.add(c);
+		for (int lit : lits) {
+			occurrences.get(index(lit)).add(c);
+			counts[index(lit)]++;
+		}
+		enqueue(c);
+	}
+
+	private void removeClause(ClauseRef c) {
+		c.removed = true;
+		for (int lit : c.lits) {
+			counts[index(lit)]--;
+		}
+	}
+
+	/*
+	 * Quita un literal de una clausula. La clausula se sustituye por otra
+	 * nueva para que en las listas de apariciones solo haya que descartar
+	 * las clausulas quitadas
+	 */
+	private void strengthen(ClauseRef c, int lit) {
+		int[] lits = new int[c.lits.length - 1];
+		int n = 0;
+		for (int l : c.lits) {
+			if (l != lit) {
+				lits[n++] = l;
+			}
+		}
+		removeClause(c);
+		if (lits.length == 0) {
+			unsatisfiable = true;
+			return;
+		}
+		if (lits.length == 1) {
+			units.add(lits[0]);
+		}
+		ClauseRef shorter = new ClauseRef(lits);
+		clauses.add(shorter);
+		for (int l : lits) {
+			occurrences.get(index(l)).add(shorter);
+			counts[index(l)]++;
+		}
+		enqueue(shorter);
+	}
+
+	/*
+	 * Clausulas que contienen el literal, descartando antes de la lista las
+	 * que ya se han quitado
+	 */
+	private List<ClauseRef> occurrenceList(int lit) {
+		List<ClauseRef> list = occurrences.get(index(lit));
+		if (list.size() > counts[index(lit)]) {
+			int n = 0;
+			for (ClauseRef c : list) {
+				if (!c.removed) {
+					list.set(n++, c);
+				}
+			}
+			list.subList(n, list.size()).clear();
+		}
+		return list;
+	}
+
+	/*
+	 * Fija los literales unitarios pendientes: se quitan las clausulas que
+	 * los contienen y su opuesto de las demas
+	 */
+	private void propagate() {
+		while (!units.isEmpty() && !unsatisfiable) {
+			int lit = units.poll();
+			int v = Math.abs(lit);
+			if (value[v] != 0) {
+				if (value[v] != (lit > 0 ? 1 : -1)) {
+					unsatisfiable = true;
+				}
+				continue;
+			}
+			value[v] = lit > 0 ? 1 : -1;
+			fixedVariables++;
+			stack.add(new int[] { lit });
+			for (ClauseRef c : new ArrayList<ClauseRef>(occurrenceList(lit))) {
+				removeClause(c);
+			}
+			for (ClauseRef c : new ArrayList<ClauseRef>(occurrenceList(-lit))) {
+				strengthen(c, -lit);
+			}
+		}
+	}
+
+	private void enqueue(ClauseRef c) {
+		if (!c.queued) {
+			c.queued = true;
+			subsumptionQueue.add(c);
+		}
+	}
+
+	/*
+	 * Usa cada clausula pendiente para subsumir o reforzar a las demas
+	 */
+	private void subsumeQueued() {
+		while (!subsumptionQueue.isEmpty() && !unsatisfiable) {
+			ClauseRef c = subsumptionQueue.poll();
+			c.queued = false;
+			if (!c.removed) {
+				backwardSubsume(c);
+				propagate();
+			}
+		}
+	}
+
+	private void backwardSubsume(ClauseRef c) {
+		/* Basta con mirar las apariciones del literal menos frecuente */
+		int best = c.lits[0];
+		for (int lit : c.lits) {
+			if (occurrences(lit) < occurrences(best)) {
+				best = lit;
+			}
+		}
+		List<ClauseRef> candidates = new ArrayList<ClauseRef>(occurrenceList(best));
+		candidates.addAll(occurrenceList(-best));
+		for (ClauseRef d : candidates) {
+			if (d == c || d.removed || d.lits.length < c.lits.length || (c.signature & ~d.signature) != 0) {
+				continue;
+			}
+			int result = subsumes(c, d);
+			if (result == 0) {
+				removeClause(d);
+				subsumed++;
+			} else if (result != Integer.MIN_VALUE) {
+				strengthen(d, result);
+				strengthened++;
+				if (unsatisfiable) {
+					return;
+				}
+			}
+			if (c.removed) {
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Devuelve 0 si c esta contenida en d, el literal de d que se puede
+	 * quitar si c esta contenida en d salvo un literal negado, o
+	 * Integer.MIN_VALUE en otro caso
+	 */
+	private int subsumes(ClauseRef c, ClauseRef d) {
+		stamp++;
+		for (int lit : d.lits) {
+			marks[index(lit)] = stamp;
+		}
+		int flipped = 0;
+		for (int lit : c.lits) {
+			if (marks[index(lit)] == stamp) {
+				continue;
+			}
+			if (flipped == 0 && marks[index(-lit)] == stamp) {
+				flipped = -lit;
+			} else {
+				return Integer.MIN_VALUE;
+			}
+		}
+		return flipped;
+	}
+
+	/*
+	 * Variables candidatas a eliminar, de menos a mas resolventes posibles
+	 */
+	private List<Integer> eliminationOrder() {
+		List<Integer> order = new ArrayList<Integer>();
+		for (int v = 1; v <= numVars; v++) {
+			if (!eliminated[v] && !frozen[v] && value[v] == 0 && occurrences(v) + occurrences(-v) > 0) {
+				order.add(v);
+			}
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				long costA = (long) occurrences(a) * occurrences(-a);
+				long costB = (long) occurrences(b) * occurrences(-b);
+				return costA < costB ? -1 : costA > costB ? 1 : 0;
+			}
+		});
+		return order;
+	}
+
+	/*
+	 * Elimina la variable por resolucion si las resolventes no superan a
+	 * las clausulas eliminadas mas el margen permitido
+	 */
+	private boolean eliminate(int v) {
+		List<ClauseRef> pos = new ArrayList<ClauseRef>(occurrenceList(v));
+		List<ClauseRef> neg = new ArrayList<ClauseRef>(occurrenceList(-v));
+		int removed = pos.size() + neg.size();
+		if (removed > MAX_OCCURRENCES && !pos.isEmpty() && !neg.isEmpty()) {
+			return false;
+		}
+
+		List<int[]> resolvents = new ArrayList<int[]>();
+		for (ClauseRef p : pos) {
+			for (ClauseRef n : neg) {
+				int[] resolvent = resolve(p.lits, n.lits, v);
+				if (resolvent == null) {
+					continue;
+				}
+				if (resolvent.length > MAX_RESOLVENT_LENGTH || resolvents.size() >= removed + growthBound) {
+					return false;
+				}
+				resolvents.add(resolvent);
+			}
+		}
+
+		/*
+		 * Para reconstruir basta con guardar las clausulas de un signo: v
+		 * toma el valor contrario salvo que alguna quede sin satisfacer
+		 */
+		List<ClauseRef> saved = pos.size() > neg.size() ? neg : pos;
+		int pivot = pos.size() > neg.size() ? -v : v;
+		for (ClauseRef c : saved) {
+			int[] clause = new int[c.lits.length];
+			clause[0] = pivot;
+			int k = 1;
+			for (int lit : c.lits) {
+				if (lit != pivot) {
+					clause[k++] = lit;
+				}
+			}
+			stack.add(clause);
+		}
+		stack.add(new int[] { -pivot });
+
+		for (ClauseRef c : pos) {
+			removeClause(c);
+		}
+		for (ClauseRef c : neg) {
+			removeClause(c);
+		}
+		eliminated[v] = true;
+		eliminatedVariables++;
+		for (int[] resolvent : resolvents) {
+			addClause(resolvent);
+		}
+		return true;
+	}
+
+	/*
+	 * Quita las clausulas bloqueadas. Al quitar una clausula con el literal
+	 * k pueden quedar bloqueadas otras por -k, asi que -k se vuelve a revisar
+	 */
+	private void eliminateBlocked() {
+		ArrayDeque<Integer> pending = new ArrayDeque<Integer>();
+		boolean[] isPending = new boolean[2 * numVars + 2];
+		for (int v = 1; v <= numVars; v++) {
+			if (!frozen[v]) {
+				pending.add(v);
+				pending.add(-v);
+				isPending[index(v)] = true;
+				isPending[index(-v)] = true;
+			}
+		}
+		while (!pending.isEmpty()) {
+			int lit = pending.poll();
+			isPending[index(lit)] = false;
+			if (occurrences(-lit) > MAX_OCCURRENCES) {
+				continue;
+			}
+			for (ClauseRef c : new ArrayList<ClauseRef>(occurrenceList(lit))) {
+				if (!isBlocked(c, lit)) {
+					continue;
+				}
+				int[] clause = new int[c.lits.length];
+				clause[0] = lit;
+				int k = 1;
+				for (int other : c.lits) {
+					if (other != lit) {
+						clause[k++] = other;
+					}
+				}
+				stack.add(clause);
+				removeClause(c);
+				blocked++;
+				for (int other : c.lits) {
+					if (other != lit && !frozen[Math.abs(other)] && !isPending[index(-other)]) {
+						isPending[index(-other)] = true;
+						pending.add(-other);
+					}
+				}
+			}
+		}
+	}
+
+	/*
+	 * Comprueba si todas las resolventes de c sobre lit son tautologias
+	 */
+	private boolean isBlocked(ClauseRef c, int lit) {
+		stamp++;
+		for (int other : c.lits) {
+			marks[index(other)] = stamp;
+		}
+		for (ClauseRef d : occurrenceList(-lit)) {
+			boolean tautology = false;
+			for (int other : d.lits) {
+				if (other != -lit && marks[index(-other)] == stamp) {
+					tautology = true;
+					break;
+				}
+			}
+			if (!tautology) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Resolvente de p y n sobre v, o null si es una tautologia
+	 */
+	private int[] resolve(int[] p, int[] n, int v) {
+		stamp++;
+		int[] resolvent = new int[p.length + n.length - 2];
+		int k = 0;
+		for (int lit : p) {
+			if (lit != v) {
+				marks[index(lit)] = stamp;
+				resolvent[k++] = lit;
+			}
+		}
+		for (int lit : n) {
+			if (lit == -v || marks[index(lit)] == stamp) {
+				continue;
+			}
+			if (marks[index(-lit)] == stamp) {
+				return null;
+			}
+			resolvent[k++] = lit;
+		}
+		return Arrays.copyOf(resolvent, k);
+	}
+
+	private int occurrences(int lit) {
+		return counts[index(lit)];
+	}
+
+	/*
+	 * Firma de la clausula por variables, para descartar rapido los pares
+	 * en los que no puede haber subsuncion
+	 */
+	private static long signature(int[] lits) {
+		long signature = 0;
+		for (int lit : lits) {
+			signature |= 1L << (Math.abs(lit) & 63);
+		}
+		return signature;
+	}
+}
@@ -0,0 +1,369 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import utils.*;
+
+import static utils.DimacsFormula.index;
+
+/**
+ * Preprocesado basado en las clausulas binarias de la formula:
+ *
+ * - Literales equivalentes: cada clausula binaria (a + b) da las
+ *   implicaciones -a -> b y -b -> a. Los literales de una misma componente
+ *   fuertemente conexa de ese grafo (calculada con {@link Kosaraju}) son
+ *   equivalentes, y se sustituyen todos por uno de ellos. Si un literal y su
+ *   opuesto caen en la misma componente, la formula es insatisfacible.
+ * - Sondeo de literales: se asigna cada literal y se propaga. Si se llega a
+ *   un conflicto, el literal es fallido y su opuesto se fija. Los literales
+ *   implicados tanto por l como por -l tambien se fijan. El sondeo se
+ *   detiene tras revisar PROBE_EFFORT clausulas por literal de la formula,
+ *   y empieza por las raices del grafo de implicaciones, cuya propagacion
+ *   incluye la de los literales a los que llegan.
+ *
+ * Como {@link Preprocessor}, conserva la numeracion de variables y permite
+ * reconstruir un modelo de la formula original.
+ */
+public class ProbingPreprocessor {
+
+	/* Clausulas que puede revisar el sondeo en total, por literal de la formula */
+	private static final int PROBE_EFFORT = 20;
+
+	private DimacsFormula formula;
+	private int numVars;
+
+	private int[][] clauses = new int[0][];
+	private int[][] occurrences;
+
+	/* Literal por el que se sustituye cada variable (ella misma si ninguno) */
+	private int[] representative;
+	private boolean[] frozen;
+
+	private Trail trail;
+
+	private boolean unsatisfiable = false;
+
+	private int substituted = 0;
+	private int failedLiterals = 0;
+	private int fixedVariables = 0;
+
+	public ProbingPreprocessor(DimacsFormula formula) {
+		this.formula = formula;
+		this.numVars = formula.getNumVariables();
+		this.representative = new int[numVars + 1];
+		for (int v = 1; v <= numVars; v++) {
+			representative[v] = v;
+		}
+		this.frozen = new boolean[numVars + 1];
+		this.trail = new Trail(numVars);
+	}
+
+	/**
+	 * Impide que la variable v se sustituya por otra equivalente.
+	 */
+	public void freeze(int v) {
+		frozen[v] = true;
+	}
+
+	/**
+	 * Simplifica la formula.
+	 *
+	 * @return una formula equisatisfacible con la misma numeracion de
+	 *         variables. Si se descubre que es insatisfacible, contiene la
+	 *         clausula vacia.
+	 */
+	public DimacsFormula simplify() {
+		substituteEquivalences();
+		buildOccurrences();
+		if (!unsatisfiable) {
+			probe();
+		}
+
+		DimacsFormula simplified = new DimacsFormula();
+		for (int v = 1; v <= numVars; v++) {
+			simplified.getVariable(formula.getSymbol(v));
+		}
+		if (unsatisfiable) {
+			simplified.addClause(new int[0]);
+			return simplified;
+		}
+		/* Se quitan las clausulas satisfechas y los literales falsos */
+		for (int[] clause : clauses) {
+			int[] lits = new int[clause.length];
+			int n = 0;
+			boolean satisfied = false;
+			for (int lit : clause) {
+				int val = trail.valueOf(lit);
+				if (val > 0) {
+					satisfied = true;
+					break;
+				}
+				if (val == 0) {
+					lits[n++] = lit;
+				}
+			}
+			if (!satisfied) {
+				simplified.addClause(Arrays.copyOf(lits, n));
+			}
+		}
+		return simplified;
+	}
+
+	/**
+	 * Extiende un modelo de la formula simplificada a la original: las
+	 * variables fijadas toman su valor y las sustituidas el de su
+	 * representante.
+	 *
+	 * @param model
+	 *            valores indexados por variable (la posicion 0 no se usa).
+	 */
+	public boolean[] extendModel(boolean[] model) {
+		boolean[] extended = Arrays.copyOf(model, Math.max(model.length, numVars + 1));
+		for (int v = 1; v <= numVars; v++) {
+			if (trail.valueOf(v) != 0) {
+				extended[v] = trail.valueOf(v) > 0;
+			}
+		}
+		for (int v = 1; v <= numVars; v++) {
+			int r = representative[v];
+			if (r != v) {
+				extended[v] = extended[Math.abs(r)] == r > 0;
+			}
+		}
+		return extended;
+	}
+
+	/**
+	 * @return true si el preprocesado ha demostrado que la formula es
+	 *         insatisfacible.
+	 */
+	public boolean isUnsatisfiable() {
+		return unsatisfiable;
+	}
+
+	public int getSubstitutedVariables() {
+		return substituted;
+	}
+
+	public int getFailedLiterals() {
+		return failedLiterals;
+	}
+
+	public int getFixedVariables() {
+		return fixedVariables;
+	}
+
+	@Override
+	public String toString() {
+		return substituted + " variables sustituidas por equivalentes, " + fixedVariables + " fijadas ("
+				+ failedLiterals + " literales fallidos)";
+	}
+
+	/*
+	 * Calcula las componentes del grafo de implicaciones de las clausulas
+	 * binarias y reescribe la formula con un literal por componente
+	 */
+	private void substituteEquivalences() {
+		DirectedGraph<Integer> implications = new DirectedGraph<Integer>();
+		for (int[] clause : formula.getClauses()) {
+			if (clause.length == 2 && clause[0] != -clause[1]) {
+				for (int lit : clause) {
+					implications.addNode(lit);
+					implications.addNode(-lit);
+				}
+				implications.addEdge(-clause[0], clause[1]);
+				implications.addEdge(-clause[1], clause[0]);
+			}
+		}
+		Map<Integer, Integer> scc = Kosaraju.stronglyConnectedComponents(implications);
+
+		/*
+		 * El representante de cada componente es su literal de menor
+		 * variable. Las componentes van por pares opuestos, asi que el
+		 * representante de -l es el opuesto del de l
+		 */
+		Map<Integer, Integer> leader = new HashMap<Integer, Integer>();
+		for (Map.Entry<Integer, Integer> e : scc.entrySet()) {
+			int lit = e.getKey();
+			Integer current = leader.get(e.getValue());
+			if (current == null || Math.abs(lit) < Math.abs(current)) {
+				leader.put(e.getValue(), lit);
+			}
+		}
+		for (int v = 1; v <= numVars; v++) {
+			Integer component = scc.get(v);
+			if (component == null) {
+				continue;
+			}
+			if (component.equals(scc.get(-v))) {
+				unsatisfiable = true;
+				return;
+			}
+			int r = leader.get(component);
+			if (r != v && !frozen[v]) {
+				representative[v] = r;
+				substituted++;
+			}
+		}
+
+		/* Reescribe la formula quitando repetidos y tautologias */
+		List<int[]> rewritten = new ArrayList<int[]>();
+		for (int[] clause : formula.getClauses()) {
+			int[] mapped = new int[clause.length];
+			for (int i = 0; i < clause.length; i++) {
+				int r = representative[Math.abs(clause[i])];
+				mapped[i] = clause[i] > 0 ? r : -r;
+			}
+			int[] lits = DimacsFormula.normalize(mapped);
+			if (lits != null) {
+				if (lits.length == 0) {
+					unsatisfiable = true;
+				}
+				rewritten.add(lits);
+			}
+		}
+		clauses = rewritten.toArray(new int[rewritten.size()][]);
+	}
+
+	private void buildOccurrences() {
+		int[] count = new int[2 * numVars + 2];
+		for (int[] clause : clauses) {
+			for (int lit : clause) {
+				count[index(lit)]++;
+			}
+		}
+		occurrences = new int[2 * numVars + 2][];
+		for (int i = 0; i < occurrences.length; i++) {
+			occurrences[i] = new int[count[i]];
+			count[i] = 0;
+		}
+		for (int c = 0; c < clauses.length; c++) {
+			for (int lit : clauses[c]) {
+				occurrences[index(lit)][count[index(lit)]++] = c;
+			}
+		}
+		/* Las clausulas unitarias se fijan desde el principio */
+		for (int[] clause : clauses) {
+			if (clause.length == 1 && !fix(clause[0])) {
+				return;
+			}
+		}
+	}
+
+	/*
+	 * Sondea los dos literales de cada variable. Solo tiene sentido sondear
+	 * l si -l aparece en alguna clausula binaria, porque si no asignar l no
+	 * propaga nada. Las variables con algun literal raiz, que no aparece en
+	 * ninguna clausula binaria, se sondean primero
+	 */
+	private void probe() {
+		boolean[] inBinary = new boolean[2 * numVars + 2];
+		for (int[] clause : clauses) {
+			if (clause.length == 2) {
+				inBinary[index(clause[0])] = true;
+				inBinary[index(clause[1])] = true;
+			}
+		}
+		int[] order = new int[numVars];
+		int n = 0;
+		for (int v = 1; v <= numVars; v++) {
+			if (inBinary[index(v)] != inBinary[index(-v)]) {
+				order[n++] = v;
+			}
+		}
+		for (int v = 1; v <= numVars; v++) {
+			if (inBinary[index(v)] && inBinary[index(-v)]) {
+				order[n++] = v;
+			}
+		}
+
+		long literals = 0;
+		for (int[] clause : clauses) {
+			literals += clause.length;
+		}
+		long budget = trail.getVisits() + PROBE_EFFORT * literals;
+		int[] mark = new int[2 * numVars + 2];
+		for (int k = 0; k < n && !unsatisfiable && trail.getVisits() < budget; k++) {
+			int v = order[k];
+			if (trail.valueOf(v) != 0 || representative[v] != v) {
+				continue;
+			}
+			boolean probePositive = inBinary[index(-v)];
+			boolean probeNegative = inBinary[index(v)];
+			if (!probePositive && !probeNegative) {
+				continue;
+			}
+
+			/* Sondea v y marca lo que implica */
+			int start = trail.size();
+			boolean positiveOk = !probePositive || assignAndPropagate(v);
+			for (int i = start; i < trail.size(); i++) {
+				mark[index(trail.get(i))] = v;
+			}
+			boolean positivePropagated = probePositive && positiveOk;
+			trail.undo(start);
+			if (!positiveOk) {
+				failedLiterals++;
+				fix(-v);
+				continue;
+			}
+
+			/* Sondea -v: lo que implican v y -v se cumple siempre */
+			List<Integer> common = new ArrayList<Integer>();
+			boolean negativeOk = !probeNegative || assignAndPropagate(-v);
+			if (negativeOk && positivePropagated) {
+				for (int i = start + 1; i < trail.size(); i++) {
+					if (mark[index(trail.get(i))] == v) {
+						common.add(trail.get(i));
+					}
+				}
+			}
+			trail.undo(start);
+			if (!negativeOk) {
+				failedLiterals++;
+				fix(v);
+				continue;
+			}
+			for (int lit : common) {
+				if (!fix(lit)) {
+					return;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Fija un literal en el nivel superior y propaga. Devuelve false si la
+	 * formula resulta insatisfacible
+	 */
+	private boolean fix(int lit) {
+		int val = trail.valueOf(lit);
+		if (val < 0) {
+			unsatisfiable = true;
+			return false;
+		}
+		if (val > 0) {
+			return true;
+		}
+		int start = trail.size();
+		if (!assignAndPropagate(lit)) {
+			unsatisfiable = true;
+			return false;
+		}
+		fixedVariables += trail.size() - start;
+		return true;
+	}
+
+	/*
+	 * Asigna el literal y propaga. Devuelve false si hay conflicto
+	 */
+	private boolean assignAndPropagate(int lit) {
+		int start = trail.size();
+		trail.assign(lit);
+		return trail.propagate(start, clauses, occurrences);
+	}
+}
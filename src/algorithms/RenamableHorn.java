@@ -0,0 +1,123 @@
+package algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import utils.*;
+
+/**
+ * Deteccion de formulas de Horn renombrables: formulas que pasan a ser de
+ * Horn al cambiar la polaridad de algunas de sus variables.
+ *
+ * Si r_x indica que se cambia la polaridad de x, el literal l de x queda
+ * positivo tras el renombrado si y solo si no se cumple el literal l sobre
+ * r_x. Exigir que en cada clausula quede como mucho un literal positivo es
+ * por tanto un problema 2-SAT sobre las variables r_x, que se resuelve con
+ * la version de {@link TwoSat} sobre enteros. Para no generar un numero
+ * cuadratico de clausulas binarias en las clausulas largas se usa la codificacion secuencial de "como mucho
+ * uno", que es lineal y solo necesita clausulas binarias.
+ */
+public class RenamableHorn {
+
+	/**
+	 * Busca un renombrado que convierta la sentencia en una sentencia de Horn.
+	 *
+	 * @return el conjunto de simbolos cuya polaridad hay que cambiar, o null
+	 *         si la sentencia no es de Horn renombrable.
+	 */
+	public static Set<PropositionSymbol> findRenaming(List<Clause> sentence) {
+		DimacsFormula formula = new DimacsFormula(sentence);
+		boolean[] renamed = findRenaming(formula);
+		if (renamed == null) {
+			return null;
+		}
+		Set<PropositionSymbol> renaming = new LinkedHashSet<PropositionSymbol>();
+		for (int v = 1; v <= formula.getNumVariables(); v++) {
+			if (renamed[v]) {
+				renaming.add(formula.getSymbol(v));
+			}
+		}
+		return renaming;
+	}
+
+	/**
+	 * Busca un renombrado sobre la formula numerada. La variable v de la
+	 * formula es tambien la variable r_v del problema 2-SAT, y las
+	 * auxiliares de la codificacion secuencial van a continuacion.
+	 *
+	 * @return las variables cuya polaridad hay que cambiar, indexadas por
+	 *         variable, o null si la formula no es de Horn renombrable.
+	 */
+	public static boolean[] findRenaming(DimacsFormula formula) {
+		int numVars = formula.getNumVariables();
+		int[] lits = new int[64];
+		int size = 0;
+		int aux = numVars;
+		for (int[] clause : formula.getClauses()) {
+			int[] clausula = DimacsFormula.normalize(clause);
+			if (clausula == null || clausula.length < 2) {
+				/* No restringen el renombrado */
+				continue;
+			}
+			if (size + 6 * clausula.length > lits.length) {
+				lits = Arrays.copyOf(lits, Math.max(2 * lits.length, size + 6 * clausula.length));
+			}
+			if (clausula.length == 2) {
+				/* Como mucho uno positivo: -P(l1) + -P(l2), con P(l) = -l */
+				lits[size++] = clausula[0];
+				lits[size++] = clausula[1];
+				continue;
+			}
+
+			/*
+			 * Codificacion secuencial: s_i indica que alguno de los i primeros
+			 * literales queda positivo, y l queda positivo si el literal -l
+			 * sobre r es cierto
+			 */
+			int previous = 0;
+			for (int l : clausula) {
+				int s = ++aux;
+				if (previous != 0) {
+					/* Si ya hay uno positivo, este no puede serlo */
+					lits[size++] = -previous;
+					lits[size++] = l;
+					lits[size++] = -previous;
+					lits[size++] = s;
+				}
+				lits[size++] = l;
+				lits[size++] = s;
+				previous = s;
+			}
+		}
+
+		boolean[] model = TwoSat.solve(aux, lits, size / 2);
+		return model == null ? null : Arrays.copyOf(model, numVars + 1);
+	}
+
+	/**
+	 * Devuelve una nueva sentencia en la que se ha cambiado la polaridad de
+	 * todos los literales de los simbolos indicados. Las tautologias, que el
+	 * renombrado no tiene en cuenta, se eliminan.
+	 */
+	public static ArrayList<Clause> rename(List<Clause> sentence, Set<PropositionSymbol> renaming) {
+		ArrayList<Clause> renamed = new ArrayList<Clause>(sentence.size());
+		for (Clause clausula : sentence) {
+			if (clausula.isTautology()) {
+				continue;
+			}
+			List<Literal> literals = new ArrayList<Literal>(clausula.getNumberLiterals());
+			for (Literal l : clausula.getLiterals()) {
+				literals.add(renaming.contains(l.getAtomicSentence()) ? negate(l) : l);
+			}
+			renamed.add(new Clause(literals));
+		}
+		return renamed;
+	}
+
+	private static Literal negate(Literal l) {
+		return new Literal(l.getAtomicSentence(), l.isNegativeLiteral());
+	}
+}
@@ -0,0 +1,106 @@
+package algorithms;
+
+import static utils.DimacsFormula.index;
+
+/**
+ * Asignacion parcial de las variables con la pila de los literales
+ * asignados, que se deshace volviendo a una posicion anterior de la pila.
+ * La comparten los algoritmos que asignan y propagan sin aprender
+ * clausulas.
+ */
+class Trail {
+
+	/* Valor de cada variable: 1, -1 o 0 si no tiene */
+	private int[] value;
+	private int[] lits;
+	private int size = 0;
+	/* Clausulas revisadas por la propagacion en total */
+	private long visits = 0;
+
+	Trail(int numVars) {
+		value = new int[numVars + 1];
+		lits = new int[numVars];
+	}
+
+	void assign(int lit) {
+		value[Math.abs(lit)] = lit > 0 ? 1 : -1;
+		lits[size++] = lit;
+	}
+
+	/**
+	 * Quita las asignaciones desde la posicion start de la pila.
+	 */
+	void undo(int start) {
+		while (size > start) {
+			value[Math.abs(lits[--size])] = 0;
+		}
+	}
+
+	/**
+	 * @return 1 si el literal es cierto, -1 si es falso y 0 si no tiene
+	 *         valor.
+	 */
+	int valueOf(int lit) {
+		int val = value[Math.abs(lit)];
+		return lit > 0 ? val : -val;
+	}
+
+	/**
+	 * @return numero de literales asignados.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return el literal en la posicion i de la pila.
+	 */
+	int get(int i) {
+		return lits[i];
+	}
+
+	/**
+	 * @return numero de clausulas revisadas por la propagacion en total.
+	 */
+	long getVisits() {
+		return visits;
+	}
+
+	/**
+	 * Propagacion unitaria desde la posicion from de la pila.
+	 *
+	 * @param occurrences
+	 *            posiciones en clauses de las clausulas de cada literal,
+	 *            indexadas por literal.
+	 * @return false si alguna clausula queda falsa.
+	 */
+	boolean propagate(int from, int[][] clauses, int[][] occurrences) {
+		for (int i = from; i < size; i++) {
+			for (int c : occurrences[index(-lits[i])]) {
+				visits++;
+				int unassigned = 0;
+				int last = 0;
+				boolean satisfied = false;
+				for (int lit : clauses[c]) {
+					int val = valueOf(lit);
+					if (val > 0) {
+						satisfied = true;
+						break;
+					}
+					if (val == 0) {
+						unassigned++;
+						last = lit;
+					}
+				}
+				if (satisfied || unassigned > 1) {
+					continue;
+				}
+				if (unassigned == 0) {
+					return false;
+				}
+				assign(last);
+			}
+		}
+		return true;
+	}
+}
@@ -58,6 +58,23 @@ public final class TwoSat {
 	 * @return Whether the formula has a satisfying assignment.
 	 */
 	public static <T> boolean isSatisfiable(ArrayList<Clause> formula) {
+		return solve(formula) != null;
+	}
+
+	/**
+	 * Given as input a list of clauses representing a 2-CNF formula, returns
+	 * a satisfying assignment for it, or null if the formula is unsatisfiable.
+	 *
+	 * Kosaraju's algorithm labels the SCCs in reverse topological order of
+	 * the implication graph (sinks first).  Assigning true to the literal of
+	 * each pair whose SCC comes later in topological order - that is, whose
+	 * label is smaller - never lets a true literal imply a false one.
+	 *
+	 * @param formula
+	 *            The input 2-CNF formula.
+	 * @return A model of the formula, or null if there is none.
+	 */
+	public static Model solve(ArrayList<Clause> formula) {
 		/* Begin by populating a set of all the variables in this formula. */
 		Set<String> variables = new HashSet<String>();
 		for (Clause clause : formula) {
@@ -103,14 +120,115 @@ public final class TwoSat {
 
 		/*
 		 * Finally, check whether any literal and its negation are in the same
-		 * strongly connected component.
+		 * strongly connected component.  If not, the formula must be
+		 * satisfiable, and the SCC order gives the assignment.
 		 */
-		for (String variable : variables)
-			if (scc.get(new Literal(new PropositionSymbol(variable), true))
-					.equals(scc.get(new Literal(new PropositionSymbol(variable), false))))
-				return false;
+		Model model = new Model();
+		for (String variable : variables) {
+			PropositionSymbol symbol = new PropositionSymbol(variable);
+			Integer positive = scc.get(new Literal(symbol, true));
+			Integer negative = scc.get(new Literal(symbol, false));
+			if (positive.equals(negative))
+				return null;
+			model.unionInPlace(symbol, positive < negative);
+		}
+		return model;
+	}
+
+	/**
+	 * Given a 2-CNF formula over the variables 1..numVars, written with
+	 * DIMACS-style integer literals so that clause i is
+	 * (lits[2i] or lits[2i+1]), returns a satisfying assignment for it, or
+	 * null if the formula is unsatisfiable.
+	 *
+	 * The implication graph is kept in flat arrays indexed by literal, and
+	 * its SCCs are found with an iterative version of Tarjan's algorithm, so
+	 * that large formulas neither allocate an object per literal nor
+	 * overflow the stack.  Tarjan's algorithm also labels the SCCs in
+	 * reverse topological order, so the assignment is chosen as in solve.
+	 *
+	 * @return the value of each variable, indexed by variable, or null.
+	 */
+	public static boolean[] solve(int numVars, int[] lits, int numClauses) {
+		int nodes = 2 * numVars + 2;
 
-		/* If not, the formula must be satisfiable. */
-		return true;
+		/* Edges (~A -> B) and (~B -> A) of each clause, grouped by source. */
+		int[] start = new int[nodes + 1];
+		for (int i = 0; i < 2 * numClauses; i++) {
+			start[DimacsFormula.index(-lits[i]) + 1]++;
+		}
+		for (int v = 0; v < nodes; v++) {
+			start[v + 1] += start[v];
+		}
+		int[] next = Arrays.copyOf(start, nodes);
+		int[] targets = new int[2 * numClauses];
+		for (int i = 0; i < numClauses; i++) {
+			int a = lits[2 * i];
+			int b = lits[2 * i + 1];
+			targets[next[DimacsFormula.index(-a)]++] = DimacsFormula.index(b);
+			targets[next[DimacsFormula.index(-b)]++] = DimacsFormula.index(a);
+		}
+
+		/* Tarjan's algorithm with an explicit call stack. */
+		int[] order = new int[nodes];
+		Arrays.fill(order, -1);
+		int[] low = new int[nodes];
+		int[] component = new int[nodes];
+		Arrays.fill(component, -1);
+		int[] stack = new int[nodes];
+		int[] calls = new int[nodes];
+		int[] edges = new int[nodes];
+		int counter = 0;
+		int components = 0;
+		for (int root = 2; root < nodes; root++) {
+			if (order[root] >= 0) {
+				continue;
+			}
+			int stackSize = 0;
+			int depth = 0;
+			order[root] = low[root] = counter++;
+			stack[stackSize++] = root;
+			calls[depth] = root;
+			edges[depth++] = start[root];
+			while (depth > 0) {
+				int v = calls[depth - 1];
+				if (edges[depth - 1] < start[v + 1]) {
+					int w = targets[edges[depth - 1]++];
+					if (order[w] < 0) {
+						order[w] = low[w] = counter++;
+						stack[stackSize++] = w;
+						calls[depth] = w;
+						edges[depth++] = start[w];
+					} else if (component[w] < 0) {
+						/* w is still on the stack, in the SCC being built. */
+						low[v] = Math.min(low[v], order[w]);
+					}
+				} else {
+					depth--;
+					if (low[v] == order[v]) {
+						int w;
+						do {
+							w = stack[--stackSize];
+							component[w] = components;
+						} while (w != v);
+						components++;
+					}
+					if (depth > 0) {
+						int parent = calls[depth - 1];
+						low[parent] = Math.min(low[parent], low[v]);
+					}
+				}
+			}
+		}
+
+		boolean[] model = new boolean[numVars + 1];
+		for (int v = 1; v <= numVars; v++) {
+			int positive = component[DimacsFormula.index(v)];
+			int negative = component[DimacsFormula.index(-v)];
+			if (positive == negative)
+				return null;
+			model[v] = positive < negative;
+		}
+		return model;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,205 @@
+package algorithms;
+
+import java.util.Arrays;
+import java.util.List;
+
+import utils.*;
+
+/**
+ * Extrae un nucleo insatisfacible de una formula: un subconjunto de sus
+ * clausulas que ya es insatisfacible por si solo.
+ *
+ * Cada clausula c_i se anade a un {@link CDCLSat} incremental como
+ * (c_i + -s_i), con un selector s_i nuevo, y se resuelve tomando todos los
+ * selectores como hipotesis. Si no hay modelo, las hipotesis fallidas son
+ * los selectores de las clausulas que han intervenido en la refutacion. El
+ * nucleo se reduce en dos fases opcionales:
+ *
+ * - Recorte: se vuelve a resolver con solo los selectores del nucleo, que
+ *   suele dar una refutacion distinta y mas pequena, hasta que deja de
+ *   encoger.
+ * - Minimizacion por borrado: se quita cada clausula y se resuelve. Si sigue
+ *   siendo insatisfacible, el nucleo pasa a ser el nuevo conjunto fallido;
+ *   si no, la clausula es imprescindible y se conserva. Al terminar, quitar
+ *   cualquier clausula hace el nucleo satisfacible. Cada llamada tiene un
+ *   limite de conflictos, y si se alcanza la clausula se conserva.
+ */
+public class UnsatCore {
+
+	private DimacsFormula formula;
+	private int trimIterations = 5;
+	private boolean minimize = true;
+	private long conflictBudget = 10000;
+
+	private CDCLSat solver;
+	private int firstSelector;
+
+	private int initialSize = 0;
+	private int trimmedSize = 0;
+	private long solverCalls = 0;
+
+	public UnsatCore(DimacsFormula formula) {
+		this.formula = formula;
+	}
+
+	/**
+	 * Numero maximo de veces que se vuelve a resolver para recortar.
+	 */
+	public void setTrimIterations(int trimIterations) {
+		this.trimIterations = trimIterations;
+	}
+
+	/**
+	 * Activa la minimizacion por borrado.
+	 */
+	public void setMinimize(boolean minimize) {
+		this.minimize = minimize;
+	}
+
+	/**
+	 * Limite de conflictos de cada llamada de la minimizacion. Un valor
+	 * negativo quita el limite.
+	 */
+	public void setConflictBudget(long conflictBudget) {
+		this.conflictBudget = conflictBudget;
+	}
+
+	/**
+	 * @return las posiciones en formula.getClauses() de las clausulas del
+	 *         nucleo, en orden, o null si la formula es satisfacible.
+	 */
+	public int[] compute() {
+		List<int[]> clauses = formula.getClauses();
+		solver = new CDCLSat();
+		firstSelector = formula.getNumVariables() + 1;
+		for (int i = 0; i < clauses.size(); i++) {
+			int[] clause = clauses.get(i);
+			int[] guarded = Arrays.copyOf(clause, clause.length + 1);
+			guarded[clause.length] = -(firstSelector + i);
+			solver.addClause(guarded);
+		}
+		solverCalls = 0;
+
+		int[] all = new int[clauses.size()];
+		for (int i = 0; i < all.length; i++) {
+			all[i] = i;
+		}
+		int[] core = refute(all);
+		if (core == null) {
+			return null;
+		}
+		initialSize = core.length;
+
+		for (int i = 0; i < trimIterations; i++) {
+			int[] trimmed = refute(core);
+			if (trimmed.length == core.length) {
+				break;
+			}
+			core = trimmed;
+		}
+		trimmedSize = core.length;
+
+		if (minimize) {
+			core = minimize(core);
+		}
+		Arrays.sort(core);
+		return core;
+	}
+
+	/**
+	 * @return tamano del nucleo de la primera refutacion.
+	 */
+	public int getInitialSize() {
+		return initialSize;
+	}
+
+	/**
+	 * @return tamano del nucleo tras el recorte.
+	 */
+	public int getTrimmedSize() {
+		return trimmedSize;
+	}
+
+	public long getSolverCalls() {
+		return solverCalls;
+	}
+
+	/*
+	 * Resuelve con las clausulas indicadas activadas. Devuelve las que
+	 * intervienen en la refutacion, o null si hay modelo
+	 */
+	private int[] refute(int[] active) {
+		solverCalls++;
+		if (!Boolean.FALSE.equals(solver.solve(selectors(active)))) {
+			return null;
+		}
+		int[] failed = solver.getFailedAssumptions();
+		int[] result = new int[failed.length];
+		for (int i = 0; i < failed.length; i++) {
+			result[i] = failed[i] - firstSelector;
+		}
+		return result;
+	}
+
+	/*
+	 * Minimizacion por borrado: prueba a quitar cada clausula del nucleo
+	 * que no se sepa ya imprescindible
+	 */
+	private int[] minimize(int[] core) {
+		boolean[] necessary = new boolean[formula.getClauses().size()];
+		solver.setConflictBudget(conflictBudget);
+		int pos = 0;
+		while (pos < core.length) {
+			int candidate = core[pos];
+			if (necessary[candidate]) {
+				pos++;
+				continue;
+			}
+			int[] rest = new int[core.length - 1];
+			System.arraycopy(core, 0, rest, 0, pos);
+			System.arraycopy(core, pos + 1, rest, pos, core.length - pos - 1);
+			int[] smaller = refute(rest);
+			if (smaller == null) {
+				/* Satisfacible o sin decidir: la clausula se queda */
+				necessary[candidate] = true;
+				pos++;
+			} else {
+				/*
+				 * Se conserva el orden del nucleo. Las conservadas por el
+				 * limite de conflictos pueden desaparecer, asi que se vuelve
+				 * a recorrer desde el principio
+				 */
+				core = keepOrder(core, smaller);
+				pos = 0;
+			}
+		}
+		solver.setConflictBudget(-1);
+		return core;
+	}
+
+	/*
+	 * Elementos de core que estan en subset, en el orden de core
+	 */
+	private int[] keepOrder(int[] core, int[] subset) {
+		boolean[] inSubset = new boolean[formula.getClauses().size()];
+		for (int c : subset) {
+			inSubset[c] = true;
+		}
+		int[] result = new int[subset.length];
+		int n = 0;
+		for (int c : core) {
+			if (inSubset[c]) {
+				result[n++] = c;
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	private int[] selectors(int[] active) {
+		int[] result = new int[active.length];
+		for (int i = 0; i < active.length; i++) {
+			result[i] = firstSelector + active[i];
+		}
+		return result;
+	}
+}
@@ -74,7 +74,8 @@ public class WalkSAT {
 	 *            number of flips allowed before giving up. Note: a value < 0 is
 	 *            interpreted as infinity.
 	 * 
-	 * @return a satisfying model or failure (null).
+	 * @return a satisfying model or failure (null). It also fails if the
+	 *         thread is interrupted.
 	 */
 	public Model walkSAT(Set<Clause> clauses, double p, int maxFlips) {
 		assertLegalProbability(p);
@@ -83,6 +84,10 @@ public class WalkSAT {
 		Model model = randomAssignmentToSymbolsInClauses(clauses);
 		// for i = 1 to max_flips do (Note: maxFlips < 0 means infinity)
 		for (int i = 0; i < maxFlips || maxFlips < 0; i++) {
+			// give up if another thread asked us to stop
+			if (Thread.currentThread().isInterrupted()) {
+				break;
+			}
 			// if model satisfies clauses then return model
 			if (model.satisfies(clauses)) {
 				System.out.println("Pasos dados por WalkSAT: " + i);
@@ -0,0 +1,141 @@
+package core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import utils.SentenceProfile;
+
+/**
+ * Seleccion automatica del algoritmo para formulas generales (-type auto).
+ *
+ * Las formulas se agrupan segun sus caracteristicas (ratio clausulas/variables,
+ * longitud media de clausula, proporcion de clausulas de Horn y tamano). Para
+ * cada grupo se guarda en un fichero el numero de ejecuciones y el tiempo
+ * medio de cada algoritmo, y se elige el de menor tiempo medio. Mientras no
+ * hay historial para un grupo, se decide con una heuristica sobre las
+ * caracteristicas de la formula.
+ */
+public class AlgorithmSelector {
+
+	public static final String DPLL = "dpll";
+	public static final String WALKSAT = "walksat";
+
+	/*
+	 * Si el unico algoritmo probado en un grupo tarda de media mas que esto,
+	 * se prueba tambien el otro
+	 */
+	private static final long EXPLORE_MILLIS = 1000;
+
+	/*
+	 * Las formulas aleatorias con k literales por clausula y un ratio por
+	 * debajo de UNDERCONSTRAINED_RATIO * 2^k / k suelen tener muchos modelos,
+	 * lo que favorece a la busqueda local. Para 3-SAT da 4.27, la
+	 * transicion de fase.
+	 */
+	private static final double UNDERCONSTRAINED_RATIO = 1.6;
+
+	/* Pasos de WalkSAT por variable */
+	private static final int WALKSAT_STEPS_PER_VARIABLE = 100;
+
+	private File historyFile;
+	private Properties history = new Properties();
+
+	/**
+	 * Crea un selector que usa el historial guardado en el fichero
+	 * indicado. Si el fichero no existe, se empieza con el historial vacio.
+	 */
+	public AlgorithmSelector(File historyFile) throws IOException {
+		this.historyFile = historyFile;
+		if (historyFile.exists()) {
+			InputStream in = new FileInputStream(historyFile);
+			try {
+				history.load(in);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	/**
+	 * Devuelve el grupo de caracteristicas al que pertenece la formula.
+	 */
+	public String bucket(SentenceProfile profile) {
+		int ratio = (int) Math.min(profile.getClauseVariableRatio(), 10);
+		int length = (int) Math.min(Math.round(profile.getMeanClauseLength()), 8);
+		int horn = (int) (profile.getHornFraction() * 4);
+		int size = (int) Math.log10(Math.max(profile.getNumSymbols(), 1));
+		return "r" + ratio + "-k" + length + "-h" + horn + "-v" + size;
+	}
+
+	/**
+	 * Elige el algoritmo para la formula.
+	 */
+	public String choose(SentenceProfile profile) {
+		String bucket = bucket(profile);
+		int dpllRuns = getRuns(bucket, DPLL);
+		int walkSatRuns = getRuns(bucket, WALKSAT);
+
+		if (dpllRuns > 0 && walkSatRuns > 0) {
+			/* Con historial de ambos, el mas rapido de media */
+			return getMean(bucket, DPLL) <= getMean(bucket, WALKSAT) ? DPLL : WALKSAT;
+		} else if (dpllRuns > 0) {
+			return getMean(bucket, DPLL) > EXPLORE_MILLIS ? WALKSAT : DPLL;
+		} else if (walkSatRuns > 0) {
+			return getMean(bucket, WALKSAT) > EXPLORE_MILLIS ? DPLL : WALKSAT;
+		}
+
+		/*
+		 * Sin historial: las formulas estructuradas (muchas clausulas de
+		 * Horn) o muy restringidas van a DPLL, y las aleatorias poco
+		 * restringidas a WalkSAT
+		 */
+		double threshold = UNDERCONSTRAINED_RATIO * Math.pow(2, profile.getMeanClauseLength())
+				/ profile.getMeanClauseLength();
+		if (profile.getHornFraction() < 0.5 && profile.getClauseVariableRatio() < threshold) {
+			return WALKSAT;
+		}
+		return DPLL;
+	}
+
+	/**
+	 * Numero maximo de pasos de WalkSAT para la formula, como minimo el
+	 * indicado en el fichero de propiedades.
+	 */
+	public int walkSatSteps(SentenceProfile profile, int minSteps) {
+		long steps = (long) WALKSAT_STEPS_PER_VARIABLE * profile.getNumSymbols();
+		return (int) Math.max(minSteps, Math.min(steps, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Anade al historial el tiempo empleado por un algoritmo con la formula
+	 * y lo guarda en el fichero.
+	 */
+	public void record(SentenceProfile profile, String algorithm, long millis) throws IOException {
+		String bucket = bucket(profile);
+		int runs = getRuns(bucket, algorithm);
+		double mean = getMean(bucket, algorithm);
+		mean += (millis - mean) / (runs + 1);
+		history.setProperty(bucket + "." + algorithm + ".runs", String.valueOf(runs + 1));
+		history.setProperty(bucket + "." + algorithm + ".ms", String.valueOf(mean));
+
+		OutputStream out = new FileOutputStream(historyFile);
+		try {
+			history.store(out, "Tiempos medios por grupo de formulas para -type auto");
+		} finally {
+			out.close();
+		}
+	}
+
+	private int getRuns(String bucket, String algorithm) {
+		return Integer.parseInt(history.getProperty(bucket + "." + algorithm + ".runs", "0"));
+	}
+
+	private double getMean(String bucket, String algorithm) {
+		return Double.parseDouble(history.getProperty(bucket + "." + algorithm + ".ms", "0"));
+	}
+}
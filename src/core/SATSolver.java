@@ -7,10 +7,23 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import algorithms.*;
 import utils.*;
@@ -23,6 +36,18 @@ import utils.*;
  */
 public class SATSolver {
 
+	/* Termino atmost(k;...), atleast(k;...) o exactly(k;...), ya sin espacios */
+	private static final Pattern CARDINALITY = Pattern.compile("\\(?(atmost|atleast|exactly)\\((\\d+);([^()]*)\\)\\)?");
+
+	/* Termino xor(...), cierto si lo son un numero impar de sus literales */
+	private static final Pattern XOR = Pattern.compile("\\(?xor\\(([^()]*)\\)\\)?");
+
+	/* Clausula sin conectivas anidadas, como (a + -b) */
+	private static final Pattern FLAT_CLAUSE = Pattern.compile("\\(?[^()<>*]*\\)?");
+
+	/* Clausula blanda [w](...), con su peso delante */
+	private static final Pattern SOFT = Pattern.compile("\\[(\\d+)\\](.*)");
+
 	/**
 	 * Obtiene la formula del fichero y comprueba si es
 	 * satisfacible, informando por pantalla.
@@ -32,10 +57,19 @@ public class SATSolver {
 			ArrayList<Clause> sentence;
 			Scanner input = null;
 			String type = "dpll";
+			/* Si se elige el algoritmo no se busca antes un renombrado de Horn */
+			boolean typeGiven = false;
 			boolean test = false;
 			String typeTest = "2-SAT";
 			int lit = 0;
 			int claus = 0;
+			String proofFile = null;
+			String aigerFile = null;
+			List<CardinalityConstraint> constraints = new ArrayList<CardinalityConstraint>();
+			List<XorConstraint> xors = new ArrayList<XorConstraint>();
+			List<SoftClause> softs = new ArrayList<SoftClause>();
+			/* Simbolos de la formula, tambien los que solo estaban en tautologias descartadas */
+			Set<PropositionSymbol> symbols = new LinkedHashSet<PropositionSymbol>();
 			
 			for (int i=0; i<args.length; i++) {
 				if (args[i].equals("-file")) {
@@ -44,8 +78,15 @@ public class SATSolver {
 					printSentence(ficheroSAT);
 					input = new Scanner(ficheroSAT);
 				} else if (args[i].equals("-type")) {
-					/* Se puede especificar el tipo de algoritmo (dpll o walksat) */
+					/* Se puede especificar el tipo de algoritmo (dpll, lookahead, walksat, cdcl, portfolio, cubes, auto, count, enum, backbone, core, maxsat o check) */
 					type = args[i+1];
+					typeGiven = true;
+				} else if (args[i].equals("-aiger")) {
+					/* Circuito AIGER (aag o aig) que se traduce a CNF en lugar de leer una formula */
+					aigerFile = args[i+1];
+				} else if (args[i].equals("-proof")) {
+					/* Fichero de la prueba DRAT que se genera con cdcl o se comprueba con check */
+					proofFile = args[i+1];
 				} else if (args[i].equals("-test")) {
 					/* Modo en el que se ejecuta una prueba aleatoria */
 					test = true;
@@ -58,7 +99,10 @@ public class SATSolver {
 				}
 			}
 			
-			if (!test && input==null) {
+			/* Contar y enumerar modelos necesita que las variables de Tseitin queden determinadas */
+			boolean preserveModels = type.equals("count") || type.equals("enum");
+			
+			if (!test && input==null && aigerFile==null) {
 				/* Si no se pasa un fichero, la introduccion es manual */
 				printMenu();
 				input = new Scanner(System.in);
@@ -67,20 +111,43 @@ public class SATSolver {
 			if (test) {
 				/* Genera una sentencia aleatoria de prueba */
 				String formula = Test.generate(typeTest, lit, claus);
-				sentence = generateSentence(formula);
+				sentence = generateSentence(formula, constraints, xors, softs, symbols, preserveModels);
 				if (formula == null || sentence == null) {
 					System.out.println("Error: test indicado incorrectamente.");
 					System.exit(5);
 				}
 				System.out.println("Generada formula aleatoria de " + claus + " clausulas " +
 						"y hasta " + lit + " literales distintos.");
+			} else if (aigerFile != null) {
+				/*
+				 * Construye el circuito con hashing estructural y anade
+				 * directamente su traduccion a la formula
+				 */
+				AndInverterGraph graph = new AndInverterGraph("_t");
+				graph.setDefinitional(preserveModels);
+				AigerReader reader = new AigerReader(graph);
+				long t1 = System.currentTimeMillis();
+				int root = 0;
+				try {
+					root = reader.read(Paths.get(aigerFile));
+				} catch (IOException e) {
+					exitOnFileError(e, 7);
+				}
+				sentence = new ArrayList<Clause>();
+				graph.toClauses(root, sentence);
+				symbols.addAll(graph.getInputSymbols());
+				long t2 = System.currentTimeMillis();
+				System.out.println("Circuito AIGER de " + reader.getNumInputs() + " entradas, "
+						+ reader.getNumLatches() + " registros, " + reader.getNumOutputs() + " salidas y "
+						+ reader.getNumAnds() + " puertas AND (" + graph.getNumAnds()
+						+ " en el grafo), traducido a " + sentence.size() + " clausulas en " + (t2-t1) + " ms");
 			} else {
 				/*
 				 * Lee la formula y la procesa para el programa
 				 */
 				String formula = readFormula(input);
 				input.close();
-				sentence = generateSentence(formula);
+				sentence = generateSentence(formula, constraints, xors, softs, symbols, preserveModels);
 				if (sentence == null) {
 					System.out.println("Error: literal introducido incorrectamente.");
 					System.exit(4);
@@ -88,54 +155,437 @@ public class SATSolver {
 			}	
 				
 			/*
-			 * Comprueba de que problema se trata y lo resuelve
+			 * Las restricciones de cardinalidad y de paridad solo las propaga
+			 * directamente CDCL, tambien dentro de MaxSAT. Para el resto de
+			 * algoritmos, y para generar pruebas DRAT, se traducen a clausulas
+			 */
+			boolean nativeConstraints = (type.equals("cdcl") && proofFile == null) || type.equals("maxsat");
+			if (!constraints.isEmpty() && !nativeConstraints) {
+				int before = sentence.size();
+				for (int i = 0; i < constraints.size(); i++) {
+					sentence.addAll(constraints.get(i).toClauses("_card" + i));
+				}
+				System.out.println(constraints.size() + " restricciones de cardinalidad traducidas a "
+						+ (sentence.size() - before) + " clausulas");
+				constraints.clear();
+			}
+			if (!xors.isEmpty() && !nativeConstraints) {
+				int before = sentence.size();
+				for (int i = 0; i < xors.size(); i++) {
+					sentence.addAll(xors.get(i).toClauses("_xor" + i));
+				}
+				System.out.println(xors.size() + " restricciones de paridad traducidas a "
+						+ (sentence.size() - before) + " clausulas");
+				xors.clear();
+			}
+			if (!softs.isEmpty() && !type.equals("maxsat")) {
+				System.out.println("Se ignoran " + softs.size() + " clausulas blandas: solo las usa -type maxsat");
+			}
+			
+			/*
+			 * Comprueba de que problema se trata y lo resuelve. El perfil
+			 * de la formula se calcula una sola vez y lo reutilizan todos
+			 * los algoritmos
 			 */
-			if(new Sentence(sentence).checkTwoSat()){			
+			Sentence formula = new Sentence(sentence);
+			/* Simbolos a renombrar para que sea de Horn, solo se buscan si hace falta */
+			Set<PropositionSymbol> renaming = null;
+			System.out.println("Formula de " + formula.getProfile());
+			if (type.equals("count")) {
+				/*
+				 * El recuento no depende del tipo de formula, y se hace sobre
+				 * la original: el preprocesado conserva la satisfacibilidad
+				 * pero no el numero de modelos
+				 */
+				Properties props = loadProperties();
+				long cacheMb = Long.parseLong(props.getProperty("count.cachemb", "256"));
+				System.out.println("Contando modelos con cache de componentes de " + cacheMb + " MB");
+				
+				ModelCounter counter = new ModelCounter(cacheMb << 20);
+				long t1 = System.currentTimeMillis();
+				BigInteger models = counter.count(toDimacs(symbols, sentence));
+				long t2 = System.currentTimeMillis();
+				System.out.println("Numero de modelos: " + models);
+				System.out.println("Decisiones: " + counter.getDecisions() + ", aciertos de cache: "
+						+ counter.getCacheHits() + ", componentes en cache: " + counter.getCacheEntries());
+				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+			} else if (type.equals("enum")) {
+				/* Como el recuento, la enumeracion se hace sobre la formula original */
+				Properties props = loadProperties();
+				long max = Long.parseLong(props.getProperty("enum.max", "0"));
+				
+				DimacsFormula dimacs = toDimacs(symbols, sentence);
+				ModelEnumerator models = new ModelEnumerator(dimacs);
+				long t1 = System.currentTimeMillis();
+				while ((max <= 0 || models.getCount() < max) && models.hasNext()) {
+					System.out.print("Modelo " + (models.getCount() + 1) + ": ");
+					/* Solo los simbolos de la entrada, que son las primeras variables */
+					boolean[] values = models.nextValues();
+					dimacs.toModel(Arrays.copyOf(values, symbols.size() + 1)).print();
+				}
+				long t2 = System.currentTimeMillis();
+				System.out.println("Modelos encontrados: " + models.getCount());
+				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+			} else if (type.equals("backbone")) {
+				Properties props = loadProperties();
+				int chunk = Integer.parseInt(props.getProperty("backbone.chunk", "16"));
+				
+				/* Los simbolos de la entrada son las primeras variables */
+				DimacsFormula dimacs = toDimacs(symbols, sentence);
+				Backbone backbone = new Backbone(dimacs);
+				backbone.setChunkSize(chunk);
+				backbone.setCandidateVariables(symbols.size());
+				long t1 = System.currentTimeMillis();
+				int[] literals = backbone.compute();
+				long t2 = System.currentTimeMillis();
+				if (literals == null) {
+					printResult(false);
+				} else {
+					System.out.print("Columna vertebral (" + literals.length + " de "
+							+ symbols.size() + " variables): ");
+					for (int l : literals) {
+						System.out.print((l > 0 ? "" : "-") + dimacs.getSymbol(Math.abs(l)) + " ");
+					}
+					System.out.println();
+				}
+				System.out.println("Llamadas al resolutor: " + backbone.getSolverCalls()
+						+ ", candidatos descartados por modelos: " + backbone.getFilteredCandidates());
+				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+			} else if (type.equals("core")) {
+				Properties props = loadProperties();
+				
+				DimacsFormula dimacs = new DimacsFormula(sentence);
+				UnsatCore extractor = new UnsatCore(dimacs);
+				extractor.setTrimIterations(Integer.parseInt(props.getProperty("core.trim", "5")));
+				extractor.setMinimize(Boolean.parseBoolean(props.getProperty("core.minimize", "true")));
+				extractor.setConflictBudget(Long.parseLong(props.getProperty("core.budget", "10000")));
+				long t1 = System.currentTimeMillis();
+				int[] core = extractor.compute();
+				long t2 = System.currentTimeMillis();
+				printResult(core == null);
+				if (core != null) {
+					System.out.println("Nucleo insatisfacible de " + core.length + " clausulas (de "
+							+ dimacs.getNumClauses() + "; " + extractor.getInitialSize() + " en la primera refutacion, "
+							+ extractor.getTrimmedSize() + " tras recortar)");
+					for (int c : core) {
+						System.out.println(toText(dimacs, dimacs.getClauses().get(c)));
+					}
+					System.out.println("Llamadas al resolutor: " + extractor.getSolverCalls());
+				}
+				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+			} else if (type.equals("maxsat")) {
+				/* MaxSAT sobre la formula original, con las restricciones nativas */
+				Properties props = loadProperties();
+				long timeout = Long.parseLong(props.getProperty("maxsat.timeout", "0"));
+				
+				DimacsFormula dimacs = new DimacsFormula(sentence);
+				for (CardinalityConstraint constraint : constraints) {
+					dimacs.addCardinalityConstraint(constraint);
+				}
+				for (XorConstraint constraint : xors) {
+					dimacs.addXorConstraint(constraint);
+				}
+				final MaxSat maxsat = new MaxSat(dimacs);
+				for (SoftClause soft : softs) {
+					maxsat.addSoftClause(dimacs.toLiterals(soft.getClause()), soft.getWeight());
+				}
+				maxsat.setTrimIterations(Integer.parseInt(props.getProperty("maxsat.trim", "3")));
+				System.out.println("Utilizando MaxSAT guiado por nucleos con " + softs.size() + " clausulas blandas");
+				
+				final long t1 = System.currentTimeMillis();
+				maxsat.setListener(new MaxSat.Listener() {
+					public void bounds(long lower, long upper) {
+						System.out.println("Coste entre " + lower + " y " + upper + " ("
+								+ (System.currentTimeMillis() - t1) + " ms)");
+					}
+				});
+				Timer timer = null;
+				if (timeout > 0) {
+					/* Al agotar el tiempo se queda con la mejor solucion */
+					timer = new Timer(true);
+					timer.schedule(new TimerTask() {
+						public void run() {
+							maxsat.interrupt();
+						}
+					}, timeout * 1000);
+				}
+				boolean[] model = maxsat.compute();
+				long t2 = System.currentTimeMillis();
+				if (timer != null) {
+					timer.cancel();
+				}
+				if (model == null) {
+					if (maxsat.isOptimal()) {
+						System.out.println("Las clausulas duras no son satisfacibles");
+					} else {
+						System.out.println("Tiempo agotado sin encontrar ninguna solucion");
+					}
+				} else {
+					if (maxsat.isOptimal()) {
+						System.out.println("Coste optimo: " + maxsat.getUpperBound());
+					} else {
+						System.out.println("Tiempo agotado. Mejor coste: " + maxsat.getUpperBound()
+								+ ", cota inferior: " + maxsat.getLowerBound());
+					}
+					System.out.print("Modelo: ");
+					dimacs.toModel(model).print();
+				}
+				System.out.println("Llamadas al resolutor: " + maxsat.getSolverCalls() + ", nucleos: "
+						+ maxsat.getCores());
+				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+			} else if (type.equals("check")) {
+				if (proofFile == null) {
+					System.out.println("Error: falta el fichero de la prueba (-proof).");
+					System.exit(8);
+				}
+				System.out.println("Comprobando la prueba DRAT " + proofFile);
+				
+				long t1 = System.currentTimeMillis();
+				DratChecker checker = new DratChecker(new DimacsFormula(sentence));
+				boolean valid = false;
+				try {
+					valid = checker.check(Paths.get(proofFile));
+				} catch (IOException e) {
+					exitOnFileError(e, 9);
+				}
+				long t2 = System.currentTimeMillis();
+				if (valid) {
+					System.out.println("Prueba valida: la formula no es satisfacible");
+				} else if (checker.getFailedLemma() > 0) {
+					System.out.println("Prueba no valida: la clausula anadida " + checker.getFailedLemma()
+							+ " no es RUP ni RAT");
+				} else {
+					System.out.println("Prueba no valida: no llega a la clausula vacia");
+				}
+				System.out.println("Clausulas anadidas: " + checker.getLemmas() + " (" + checker.getRatLemmas()
+						+ " RAT), borradas: " + checker.getDeletions());
+				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+			} else if (proofFile != null) {
+				/*
+				 * La prueba se genera con CDCL sobre la formula original, sin
+				 * preprocesar, para que se pueda comprobar contra el fichero
+				 */
+				System.out.println("Utilizando algoritmo CDCL con prueba DRAT en " + proofFile);
+				
+				DimacsFormula dimacs = new DimacsFormula(sentence);
+				DratWriter proof = null;
+				try {
+					proof = new DratWriter(Paths.get(proofFile));
+				} catch (IOException e) {
+					exitOnFileError(e, 9);
+				}
+				CDCLSat sat = new CDCLSat();
+				sat.setProof(proof);
+				long t1 = System.currentTimeMillis();
+				sat.addFormula(dimacs);
+				boolean result = Boolean.TRUE.equals(sat.solve());
+				try {
+					proof.close();
+				} catch (IOException e) {
+					exitOnFileError(e, 9);
+				}
+				long t2 = System.currentTimeMillis();
+				printResult(result);
+				if (result) {
+					System.out.print("Modelo: ");
+					dimacs.toModel(sat.getModel()).print();
+				}
+				System.out.println("Prueba: " + proof.getAdditions() + " clausulas anadidas, "
+						+ proof.getDeletions() + " borradas, " + proof.getBytes() + " bytes");
+				System.out.println("Conflictos: " + sat.getConflicts() + ", decisiones: " + sat.getDecisions());
+				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+			} else if (!constraints.isEmpty() || !xors.isEmpty()) {
+				/*
+				 * El preprocesado no conoce las restricciones, asi que se
+				 * resuelve la formula original
+				 */
+				System.out.println("Utilizando algoritmo CDCL con " + constraints.size()
+						+ " restricciones de cardinalidad y " + xors.size() + " de paridad");
+				
+				DimacsFormula dimacs = new DimacsFormula(sentence);
+				for (CardinalityConstraint constraint : constraints) {
+					dimacs.addCardinalityConstraint(constraint);
+				}
+				for (XorConstraint constraint : xors) {
+					dimacs.addXorConstraint(constraint);
+				}
+				CDCLSat sat = new CDCLSat();
+				long t1 = System.currentTimeMillis();
+				sat.addFormula(dimacs);
+				boolean result = Boolean.TRUE.equals(sat.solve());
+				long t2 = System.currentTimeMillis();
+				printResult(result);
+				if (result) {
+					System.out.print("Modelo: ");
+					dimacs.toModel(sat.getModel()).print();
+				}
+				System.out.println("Conflictos: " + sat.getConflicts() + ", decisiones: " + sat.getDecisions());
+				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+			} else if (formula.getProfile().getClausesOfLength(0) > 0) {
+				/* Alguna parte es siempre falsa, por ejemplo False o -(a -> a) */
+				System.out.println("Contiene la clausula vacia");
+				printResult(false);
+			} else if(formula.checkTwoSat()){			
 				System.out.println("Es 2-SAT");
 				long t1 = System.currentTimeMillis();
 				boolean result = TwoSat.isSatisfiable(sentence);
 				long t2 = System.currentTimeMillis();
 				printResult(result);
 				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
-			} else if (new Sentence(sentence).checkHornSat()){			
+			} else if (formula.checkHornSat()){			
 				System.out.println("Es HORN-SAT");
 				long t1 = System.currentTimeMillis();
 				boolean result = HornSat.isSatisfiable(sentence);
 				long t2 = System.currentTimeMillis();
 				printResult(result);
 				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+			} else if (!typeGiven && (renaming = RenamableHorn.findRenaming(sentence)) != null) {
+				/* Cambiando la polaridad de algunas variables pasa a ser de Horn */
+				System.out.println("Es HORN-SAT renombrable (" + renaming.size() + " variables renombradas)");
+				long t1 = System.currentTimeMillis();
+				boolean result = HornSat.isSatisfiable(RenamableHorn.rename(sentence, renaming));
+				long t2 = System.currentTimeMillis();
+				printResult(result);
+				System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
 			} else {
 				System.out.println("No es 2-SAT ni HORN-SAT");
 				
 				/*
 				 * Lee el fichero de propiedades
 				 */
-				Properties props = new Properties();
-				InputStream file = new FileInputStream("application.properties");
-				props.load(file);
+				Properties props = loadProperties();
+				
+				/*
+				 * Preprocesa la formula antes de la busqueda, guardando lo
+				 * necesario para reconstruir el modelo de la original
+				 */
+				DimacsFormula dimacs = new DimacsFormula(sentence);
+				ProbingPreprocessor probing = null;
+				Preprocessor preprocessor = null;
+				if (Boolean.parseBoolean(props.getProperty("preprocess", "true"))) {
+					long t1 = System.currentTimeMillis();
+					if (Boolean.parseBoolean(props.getProperty("preprocess.probing", "true"))) {
+						probing = new ProbingPreprocessor(dimacs);
+						dimacs = probing.simplify();
+						System.out.println("Sondeo: " + probing);
+					}
+					preprocessor = new Preprocessor(dimacs);
+					preprocessor.setGrowthBound(Integer.parseInt(props.getProperty("preprocess.growth", "0")));
+					preprocessor.setBlockedClauseElimination(Boolean.parseBoolean(props.getProperty("preprocess.bce", "true")));
+					dimacs = preprocessor.simplify();
+					long t2 = System.currentTimeMillis();
+					System.out.println("Preprocesado en " + (t2-t1) + " ms: " + preprocessor);
+					sentence = new ArrayList<Clause>();
+					for (int[] clause : dimacs.getClauses()) {
+						sentence.add(dimacs.toClause(clause));
+					}
+					formula = new Sentence(sentence);
+				}
 				
 				/*
 				 * Elige el algoritmo segun lo indicado por parametro
 				 */
-				if (type.equals("dpll")) {
+				if (preprocessor != null && preprocessor.isUnsatisfiable()) {
+					printResult(false);
+				} else if (type.equals("auto")) {
+					solveAuto(formula, props);
+				} else if (type.equals("dpll")) {
 					System.out.println("Utilizando algoritmo DPLL");
 					
-					DPLLSat sat = new DPLLSat();
 					long t1 = System.currentTimeMillis();
-					boolean result = sat.isSatisfiable(new Sentence(sentence));
+					boolean result = solveByComponents(formula, new ComponentDecomposition.ComponentSolver() {
+						public boolean isSatisfiable(Sentence component) {
+							return new DPLLSat().isSatisfiable(component);
+						}
+					}, props);
+					long t2 = System.currentTimeMillis();
+					printResult(result);
+					System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+				} else if (type.equals("lookahead")) {
+					System.out.println("Utilizando DPLL con anticipacion (look-ahead)");
+					
+					long t1 = System.currentTimeMillis();
+					boolean result = solveByComponents(formula, new ComponentDecomposition.ComponentSolver() {
+						public boolean isSatisfiable(Sentence component) {
+							return new LookAheadSat().isSatisfiable(component);
+						}
+					}, props);
 					long t2 = System.currentTimeMillis();
 					printResult(result);
 					System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
 				} else if (type.equals("walksat")) {
-					double probRandom = Double.parseDouble(props.getProperty("walksat.probrandom"));
-					int maxSteps = Integer.parseInt(props.getProperty("walksat.maxsteps"));
+					final double probRandom = Double.parseDouble(props.getProperty("walksat.probrandom"));
+					final int maxSteps = Integer.parseInt(props.getProperty("walksat.maxsteps"));
 					System.out.println("Utilizando WalkSAT con p=" + probRandom + " y maxSteps=" + maxSteps);
 					
-					WalkSAT sat = new WalkSAT(probRandom, maxSteps);
 					long t1 = System.currentTimeMillis();
-					boolean result = sat.isSatisfiable(new Sentence(sentence));
+					boolean result = solveByComponents(formula, new ComponentDecomposition.ComponentSolver() {
+						public boolean isSatisfiable(Sentence component) {
+							/* Cada componente puede ir en su propio hilo: no se comparte el Random */
+							return new WalkSAT(probRandom, maxSteps).isSatisfiable(component);
+						}
+					}, props);
+					long t2 = System.currentTimeMillis();
+					printResult(result);
+					System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+				} else if (type.equals("cdcl")) {
+					System.out.println("Utilizando algoritmo CDCL");
+					
+					CDCLSat sat = new CDCLSat();
+					long t1 = System.currentTimeMillis();
+					sat.addFormula(dimacs);
+					boolean result = Boolean.TRUE.equals(sat.solve());
 					long t2 = System.currentTimeMillis();
 					printResult(result);
+					if (result) {
+						boolean[] model = sat.getModel();
+						if (preprocessor != null) {
+							model = preprocessor.extendModel(model);
+						}
+						if (probing != null) {
+							model = probing.extendModel(model);
+						}
+						System.out.print("Modelo: ");
+						dimacs.toModel(model).print();
+					}
+					System.out.println("Conflictos: " + sat.getConflicts() + ", decisiones: " + sat.getDecisions());
+					System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+				} else if (type.equals("portfolio")) {
+					int threads = Integer.parseInt(props.getProperty("portfolio.threads", "0"));
+					if (threads <= 0) {
+						threads = Runtime.getRuntime().availableProcessors();
+					}
+					System.out.println("Utilizando portfolio de " + threads + " resolutores CDCL");
+					
+					PortfolioSat sat = new PortfolioSat(threads);
+					sat.setClauseSharing(Boolean.parseBoolean(props.getProperty("portfolio.share", "true")));
+					long t1 = System.currentTimeMillis();
+					Boolean result = sat.isSatisfiable(dimacs);
+					long t2 = System.currentTimeMillis();
+					printResult(Boolean.TRUE.equals(result));
+					System.out.println("Configuracion ganadora: " + sat.getWinner().getConfig());
+					System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+				} else if (type.equals("cubes")) {
+					int threads = Integer.parseInt(props.getProperty("cubes.threads", "0"));
+					if (threads <= 0) {
+						threads = Runtime.getRuntime().availableProcessors();
+					}
+					int depth = Integer.parseInt(props.getProperty("cubes.depth", "0"));
+					if (depth <= 0) {
+						/* Unos 8 cubos por hilo para repartir bien la carga */
+						depth = 32 - Integer.numberOfLeadingZeros(threads) + 3;
+					}
+					long conflicts = Long.parseLong(props.getProperty("cubes.conflicts", "2000"));
+					System.out.println("Utilizando cube-and-conquer con " + threads + " hilos y cubos de "
+							+ depth + " variables");
+					
+					CubeAndConquer sat = new CubeAndConquer(dimacs, depth, conflicts);
+					ForkJoinPool pool = new ForkJoinPool(threads);
+					long t1 = System.currentTimeMillis();
+					Boolean result = sat.isSatisfiable(pool);
+					long t2 = System.currentTimeMillis();
+					pool.shutdown();
+					printResult(Boolean.TRUE.equals(result));
 					System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
 				} else {
 					System.out.println("Error: algoritmo introducido no conocido");
@@ -156,6 +606,86 @@ public class SATSolver {
 		}
 	}
 
+	/**
+	 * Muestra el error de lectura o escritura de un fichero distinto del de
+	 * propiedades y termina con el codigo indicado.
+	 */
+	private static void exitOnFileError(IOException e, int code) {
+		if (e instanceof NoSuchFileException) {
+			System.out.println("Error: fichero no encontrado");
+		} else if (e instanceof AccessDeniedException) {
+			System.out.println("Error: sin permiso para acceder a " + e.getMessage());
+		} else {
+			System.out.println("Error: " + e.getMessage());
+		}
+		System.exit(code);
+	}
+
+	/**
+	 * Lee el fichero de propiedades de la aplicacion.
+	 */
+	private static Properties loadProperties() throws IOException {
+		Properties props = new Properties();
+		InputStream file = new FileInputStream("application.properties");
+		props.load(file);
+		file.close();
+		return props;
+	}
+
+	/**
+	 * Resuelve una formula general con el algoritmo que elige el selector
+	 * automatico y guarda el tiempo empleado en su historial.
+	 */
+	private static void solveAuto(Sentence formula, Properties props) throws IOException {
+		AlgorithmSelector selector = new AlgorithmSelector(
+				new File(props.getProperty("auto.history", "auto_history.properties")));
+		SentenceProfile profile = formula.getProfile();
+		String algorithm = selector.choose(profile);
+		
+		long t1 = System.currentTimeMillis();
+		boolean result;
+		if (algorithm.equals(AlgorithmSelector.WALKSAT)) {
+			double probRandom = Double.parseDouble(props.getProperty("walksat.probrandom"));
+			int maxSteps = selector.walkSatSteps(profile, Integer.parseInt(props.getProperty("walksat.maxsteps")));
+			System.out.println("Seleccion automatica (" + selector.bucket(profile) + "): WalkSAT con p="
+					+ probRandom + " y maxSteps=" + maxSteps);
+			result = new WalkSAT(probRandom, maxSteps).isSatisfiable(formula);
+			if (!result) {
+				/* WalkSAT no puede demostrar que no es satisfacible */
+				System.out.println("WalkSAT no ha encontrado modelo, se recurre a DPLL");
+				result = new DPLLSat().isSatisfiable(formula);
+			}
+		} else {
+			System.out.println("Seleccion automatica (" + selector.bucket(profile) + "): algoritmo DPLL");
+			result = new DPLLSat().isSatisfiable(formula);
+		}
+		long t2 = System.currentTimeMillis();
+		selector.record(profile, algorithm, t2-t1);
+		
+		printResult(result);
+		System.out.println("Tiempo empleado: " + (t2-t1) + " ms");
+	}
+
+	/**
+	 * Resuelve la formula dividiendola en componentes independientes, que
+	 * se resuelven en paralelo con el algoritmo indicado. Si la formula es
+	 * conexa se resuelve directamente.
+	 */
+	private static boolean solveByComponents(Sentence formula, ComponentDecomposition.ComponentSolver solver,
+			Properties props) throws InterruptedException {
+		List<ArrayList<Clause>> components = ComponentDecomposition.split(formula.getClauses());
+		if (components.size() <= 1) {
+			return solver.isSatisfiable(formula);
+		}
+		int threads = Integer.parseInt(props.getProperty("components.threads", "0"));
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		System.out.println("Dividida en " + components.size() + " componentes independientes (la mayor con "
+				+ components.get(components.size() - 1).size() + " clausulas)");
+		return ComponentDecomposition.isSatisfiable(components, solver, threads);
+	}
+
 	/**
 	 * Muestra por pantalla si es satisfacible o no la formula introducida.
 	 */
@@ -167,18 +697,125 @@ public class SATSolver {
 		}
 	}
 
+	/*
+	 * Escribe una clausula con la sintaxis de entrada
+	 */
+	private static String toText(DimacsFormula dimacs, int[] clause) {
+		StringBuilder sb = new StringBuilder("(");
+		for (int i = 0; i < clause.length; i++) {
+			if (i > 0) {
+				sb.append("+");
+			}
+			if (clause[i] < 0) {
+				sb.append("-");
+			}
+			sb.append(dimacs.getSymbol(Math.abs(clause[i])));
+		}
+		return sb.append(")").toString();
+	}
+
 	/**
 	 * Dado un fichero que contiene una formula SAT, genera una sentencia
-	 * equivalente en forma de lista de clausulas.
+	 * equivalente en forma de lista de clausulas. Las tautologias y las
+	 * clausulas repetidas se descartan a medida que se leen. Los terminos
+	 * atmost(k; a, b, ...), atleast(k; ...) y exactly(k; ...) se anaden a
+	 * la lista de restricciones de cardinalidad, los xor(a, b, ...) a la
+	 * de restricciones de paridad, y las clausulas con un peso delante,
+	 * [w](a + b), a la de clausulas blandas. Los simbolos de todo lo que no
+	 * es blando se anaden a symbols, aunque solo aparezcan en tautologias.
+	 *
+	 * Las partes que no son clausulas, como -(a * b) o (a -> b * c), se leen
+	 * como formulas generales sobre un grafo AND con hashing estructural y
+	 * se traducen a clausulas con Tseitin. Si preserveModels es cierto, los
+	 * simbolos auxiliares quedan determinados y se conserva el numero de
+	 * modelos.
 	 */
-	private static ArrayList<Clause> generateSentence(String line) {
+	private static ArrayList<Clause> generateSentence(String line, List<CardinalityConstraint> constraints,
+			List<XorConstraint> xors, List<SoftClause> softs, Set<PropositionSymbol> symbols,
+			boolean preserveModels) {
 		/* Separa la formula en clausulas */
 		line = line.replace(" ", "");
-		String[] clauses = line.split("\\*");
+		String[] clauses = splitClauses(line);
 		ArrayList<Clause> sentence = new ArrayList<Clause>();
+		Set<Clause> seen = new HashSet<Clause>();
+		int tautologies = 0;
+		int duplicates = 0;
+		AndInverterGraph graph = null;
+		FormulaParser parser = null;
+		int general = 0;
+		int generated = 0;
 
 		/* Procesa cada clausula de la formula */
 		for (int i = 0; i < clauses.length; i++) {
+			long weight = 0;
+			Matcher soft = SOFT.matcher(clauses[i]);
+			if (soft.matches()) {
+				weight = Long.parseLong(soft.group(1));
+				clauses[i] = soft.group(2);
+				if (!FLAT_CLAUSE.matcher(clauses[i]).matches()) {
+					/* Solo las clausulas pueden ser blandas */
+					return null;
+				}
+			}
+			Matcher cardinality = CARDINALITY.matcher(clauses[i]);
+			Matcher xor = XOR.matcher(clauses[i]);
+			if (xor.matches()) {
+				/* Restriccion de paridad, con literales separados por comas */
+				List<Literal> literals = parseLiterals(xor.group(1));
+				if (literals == null) {
+					return null;
+				}
+				xors.add(new XorConstraint(literals));
+				addSymbols(literals, symbols);
+				continue;
+			}
+			if (cardinality.matches()) {
+				/* Restriccion de cardinalidad, con literales separados por comas */
+				int k = Integer.parseInt(cardinality.group(2));
+				List<Literal> parsed = parseLiterals(cardinality.group(3));
+				if (parsed == null) {
+					return null;
+				}
+				List<Literal> list = new ArrayList<Literal>(new LinkedHashSet<Literal>(parsed));
+				addSymbols(list, symbols);
+				String kind = cardinality.group(1);
+				if (!kind.equals("atleast")) {
+					constraints.add(CardinalityConstraint.atMost(k, list));
+				}
+				if (!kind.equals("atmost")) {
+					constraints.add(CardinalityConstraint.atLeast(k, list));
+				}
+				continue;
+			}
+			if (!FLAT_CLAUSE.matcher(clauses[i]).matches()) {
+				/* Formula general: se anaden las clausulas de su traduccion */
+				if (graph == null) {
+					graph = new AndInverterGraph("_t");
+					graph.setDefinitional(preserveModels);
+					parser = new FormulaParser(graph);
+				}
+				int root;
+				try {
+					root = parser.parse(clauses[i]);
+				} catch (IllegalArgumentException e) {
+					return null;
+				}
+				List<Clause> translated = new ArrayList<Clause>();
+				graph.toClauses(root, translated);
+				symbols.addAll(graph.getInputSymbols());
+				general++;
+				generated += translated.size();
+				for (Clause clause : translated) {
+					if (clause.isTautology()) {
+						tautologies++;
+					} else if (!seen.add(clause)) {
+						duplicates++;
+					} else {
+						sentence.add(clause);
+					}
+				}
+				continue;
+			}
 			/* Separa la clausula en literales */
 			String[] literales = clauses[i].split("\\+");		
 			List<Literal> litInClause = new ArrayList<Literal>();
@@ -206,12 +843,105 @@ public class SATSolver {
 					litInClause.add(new Literal(new PropositionSymbol(literales[j]), true));
 				}
 			}
-			sentence.add(new Clause(litInClause));
+			Clause clause = new Clause(litInClause);
+			if (soft.matches()) {
+				/* Las blandas pueden repetirse: sus pesos se suman */
+				if (weight > 0 && !clause.isTautology()) {
+					softs.add(new SoftClause(clause, weight));
+				}
+			} else {
+				addSymbols(litInClause, symbols);
+				if (clause.isTautology()) {
+					tautologies++;
+				} else if (!seen.add(clause)) {
+					duplicates++;
+				} else {
+					sentence.add(clause);
+				}
+			}
 		}
 		
+		if (general > 0) {
+			System.out.println(general + " formulas generales traducidas a " + generated + " clausulas ("
+					+ graph.getNumAnds() + " puertas AND compartidas)");
+		}
+		if (tautologies + duplicates > 0) {
+			System.out.println("Descartadas " + tautologies + " tautologias y " + duplicates
+					+ " clausulas repetidas");
+		}
 		return sentence;
 	}
+
+	/**
+	 * Separa la formula por los * que no estan dentro de parentesis. Si hay
+	 * una implicacion o equivalencia fuera de parentesis, que tiene menos
+	 * prioridad que la conjuncion, la formula entera es una sola parte.
+	 */
+	private static String[] splitClauses(String line) {
+		List<String> parts = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == '>' && depth <= 0) {
+				return new String[] { line };
+			} else if (c == '*' && depth <= 0) {
+				parts.add(line.substring(start, i));
+				start = i + 1;
+			}
+		}
+		parts.add(line.substring(start));
+		return parts.toArray(new String[parts.size()]);
+	}
 	
+	private static void addSymbols(List<Literal> literals, Set<PropositionSymbol> symbols) {
+		for (Literal l : literals) {
+			PropositionSymbol p = l.getAtomicSentence();
+			/* True y False son constantes, no variables del modelo */
+			if (!p.isAlwaysTrue() && !p.isAlwaysFalse()) {
+				symbols.add(p);
+			}
+		}
+	}
+
+	/**
+	 * Formula numerada con todos los simbolos, en orden de aparicion, y
+	 * despues los de las clausulas que no esten entre ellos. Un simbolo que
+	 * no aparece en ninguna clausula duplica el numero de modelos.
+	 */
+	private static DimacsFormula toDimacs(Set<PropositionSymbol> symbols, List<Clause> sentence) {
+		DimacsFormula dimacs = new DimacsFormula();
+		for (PropositionSymbol symbol : symbols) {
+			dimacs.getVariable(symbol);
+		}
+		for (Clause clause : sentence) {
+			dimacs.addClause(dimacs.toLiterals(clause));
+		}
+		return dimacs;
+	}
+
+	/**
+	 * Lee una lista de literales separados por comas, o devuelve null si
+	 * alguno no es correcto
+	 */
+	private static List<Literal> parseLiterals(String list) {
+		List<Literal> literals = new ArrayList<Literal>();
+		for (String name : list.split(",")) {
+			boolean positive = !name.startsWith("-");
+			name = name.replace("-", "");
+			if (name.isEmpty() || !name.substring(0,1).matches("[A-Za-z]") ||
+					includes(name, "[^A-Za-z0-9_]")) {
+				return null;
+			}
+			literals.add(new Literal(new PropositionSymbol(name), positive));
+		}
+		return literals;
+	}
+
 	/**
 	 * Lee la formula de un canal de entrada hasta encontrar un finalizador, 
 	 * que puede ser el final de fichero o una linea con "end"
@@ -244,6 +974,10 @@ public class SATSolver {
 		System.out.println("Negacion: -");
 		System.out.println("Las variables deben empezar por letra, y pueden contener letras, numeros y _");
 		System.out.println("Las clausulas pueden aparecer separadas con ( )");
+		System.out.println("Restricciones de cardinalidad: atmost(k; a, b, c), atleast(k; ...), exactly(k; ...)");
+		System.out.println("Restricciones de paridad (numero impar de ciertos): xor(a, b, c)");
+		System.out.println("Clausulas blandas con peso, para -type maxsat: [3](a + -b)");
+		System.out.println("Formulas generales: -(a * b) + (c -> d) * (e <-> -f); + tiene mas prioridad que *");
 		System.out.println("La formula CNF puede ocupar varias lineas.");
 		System.out.println("Para indicar que ha terminado su formula, escriba end en una linea nueva.");
 		System.out.println();
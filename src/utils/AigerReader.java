@@ -0,0 +1,397 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lee un circuito AIGER, en formato ASCII (aag) o binario (aig), y lo
+ * construye en un {@link AndInverterGraph}, que aplica el hashing
+ * estructural y las simplificaciones al crear cada puerta.
+ *
+ * El circuito se comprueba de forma combinacional: los registros son
+ * variables libres, como las entradas. La formula resultante es cierta si
+ * alguna salida (o propiedad mala) vale 1 y se cumplen todas las
+ * restricciones invariantes; sin salidas, basta con las restricciones. No
+ * se admiten propiedades de justicia ni de equidad.
+ *
+ * Las entradas se llaman i0, i1, ... y los registros l0, l1, ..., salvo que
+ * la tabla de simbolos les de un nombre valido. El fichero se lee por NIO
+ * en bloques, y en formato binario las puertas se construyen a medida que
+ * se leen, porque siempre vienen ordenadas.
+ */
+public class AigerReader {
+
+	private static final int READ_BUFFER_SIZE = 1 << 16;
+
+	/* Marcas de edges[] mientras se ordenan las puertas ASCII */
+	private static final int UNRESOLVED = -1;
+	private static final int VISITING = -2;
+
+	private AndInverterGraph graph;
+
+	private int maxVar;
+	private int numInputs;
+	private int numLatches;
+	private int numOutputs;
+	private int numAnds;
+
+	/* Arista del grafo de cada variable AIGER */
+	private int[] edges;
+
+	private FileChannel channel;
+	private ByteBuffer buffer;
+
+	public AigerReader(AndInverterGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * Lee el circuito del fichero.
+	 *
+	 * @return la arista del grafo que debe ser cierta.
+	 * @throws IOException
+	 *             si no se puede leer o no es un circuito AIGER correcto.
+	 */
+	public int read(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+		buffer.flip();
+		try {
+			return read();
+		} finally {
+			channel.close();
+		}
+	}
+
+	public int getNumInputs() {
+		return numInputs;
+	}
+
+	public int getNumLatches() {
+		return numLatches;
+	}
+
+	public int getNumOutputs() {
+		return numOutputs;
+	}
+
+	/**
+	 * @return numero de puertas AND del fichero, antes de simplificar.
+	 */
+	public int getNumAnds() {
+		return numAnds;
+	}
+
+	private int read() throws IOException {
+		String format = word();
+		boolean binary;
+		if (format.equals("aig")) {
+			binary = true;
+		} else if (format.equals("aag")) {
+			binary = false;
+		} else {
+			throw error("cabecera desconocida " + format);
+		}
+		maxVar = number();
+		numInputs = number();
+		numLatches = number();
+		numOutputs = number();
+		numAnds = number();
+		/* Campos opcionales de AIGER 1.9 */
+		int[] extra = new int[4];
+		for (int i = 0; i < extra.length && !atEndOfLine(); i++) {
+			extra[i] = number();
+		}
+		endLine();
+		int numBad = extra[0];
+		int numConstraints = extra[1];
+		if (extra[2] > 0 || extra[3] > 0) {
+			throw error("no se admiten propiedades de justicia ni de equidad");
+		}
+		if (binary && maxVar != numInputs + numLatches + numAnds) {
+			throw error("la cabecera binaria no cumple M = I + L + A");
+		}
+
+		edges = new int[maxVar + 1];
+		Arrays.fill(edges, UNRESOLVED);
+		edges[0] = AndInverterGraph.FALSE;
+		int[] inputEdges = new int[numInputs];
+		int[] latchEdges = new int[numLatches];
+
+		for (int i = 0; i < numInputs; i++) {
+			int var = binary ? i + 1 : variable(number());
+			if (!binary) {
+				endLine();
+			}
+			inputEdges[i] = define(var, graph.input(new PropositionSymbol("i" + i)));
+		}
+		for (int i = 0; i < numLatches; i++) {
+			int var = binary ? numInputs + i + 1 : variable(number());
+			/* La funcion de siguiente estado y el valor inicial no se usan */
+			number();
+			if (!atEndOfLine()) {
+				number();
+			}
+			endLine();
+			latchEdges[i] = define(var, graph.input(new PropositionSymbol("l" + i)));
+		}
+		int[] outputs = readLiterals(numOutputs + numBad);
+		int[] constraints = readLiterals(numConstraints);
+
+		if (binary) {
+			for (int i = 0; i < numAnds; i++) {
+				int lhs = 2 * (numInputs + numLatches + i + 1);
+				int rhs0 = lhs - delta();
+				int rhs1 = rhs0 - delta();
+				if (rhs0 < 0 || rhs1 < 0) {
+					throw error("puerta " + lhs + " mal codificada");
+				}
+				edges[lhs >> 1] = graph.and(edge(rhs0), edge(rhs1));
+			}
+		} else {
+			readAsciiAnds();
+		}
+		readSymbols(inputEdges, latchEdges);
+
+		int root = outputs.length == 0 ? AndInverterGraph.TRUE : AndInverterGraph.FALSE;
+		for (int lit : outputs) {
+			root = graph.or(root, edge(lit));
+		}
+		for (int lit : constraints) {
+			root = graph.and(root, edge(lit));
+		}
+		return root;
+	}
+
+	private int define(int var, int edge) throws IOException {
+		if (edges[var] != UNRESOLVED) {
+			throw error("variable " + var + " definida dos veces");
+		}
+		edges[var] = edge;
+		return edge;
+	}
+
+	private int[] readLiterals(int count) throws IOException {
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = number();
+			variable(result[i] & ~1);
+			endLine();
+		}
+		return result;
+	}
+
+	/*
+	 * Arista del literal AIGER, que ya debe estar construido
+	 */
+	private int edge(int lit) throws IOException {
+		int var = variable(lit & ~1);
+		if (edges[var] < 0) {
+			throw error("literal " + lit + " sin definir");
+		}
+		return edges[var] ^ (lit & 1);
+	}
+
+	private int variable(int lit) throws IOException {
+		if ((lit & 1) != 0 || (lit >> 1) > maxVar || lit < 0) {
+			throw error("literal " + lit + " no valido");
+		}
+		return lit >> 1;
+	}
+
+	/*
+	 * En ASCII las puertas pueden venir en cualquier orden: se guardan y se
+	 * construyen con un recorrido en profundidad sin recursion
+	 */
+	private void readAsciiAnds() throws IOException {
+		int[] rhs0 = new int[maxVar + 1];
+		int[] rhs1 = new int[maxVar + 1];
+		boolean[] isAnd = new boolean[maxVar + 1];
+		int[] order = new int[numAnds];
+		for (int i = 0; i < numAnds; i++) {
+			int var = variable(number());
+			if (edges[var] != UNRESOLVED || isAnd[var]) {
+				throw error("variable " + var + " definida dos veces");
+			}
+			isAnd[var] = true;
+			rhs0[var] = number();
+			rhs1[var] = number();
+			variable(rhs0[var] & ~1);
+			variable(rhs1[var] & ~1);
+			endLine();
+			order[i] = var;
+		}
+		int[] stack = new int[16];
+		for (int start : order) {
+			int size = 0;
+			stack[size++] = start;
+			while (size > 0) {
+				int var = stack[size - 1];
+				if (edges[var] >= 0) {
+					size--;
+				} else if (edges[var] == UNRESOLVED) {
+					if (!isAnd[var]) {
+						throw error("variable " + var + " sin definir");
+					}
+					edges[var] = VISITING;
+					if (size + 2 > stack.length) {
+						stack = Arrays.copyOf(stack, 2 * stack.length);
+					}
+					for (int child : new int[] { rhs0[var] >> 1, rhs1[var] >> 1 }) {
+						if (edges[child] == VISITING) {
+							throw error("ciclo en la puerta " + 2 * var);
+						}
+						if (edges[child] == UNRESOLVED) {
+							stack[size++] = child;
+						}
+					}
+				} else {
+					edges[var] = graph.and(edge(rhs0[var]), edge(rhs1[var]));
+					size--;
+				}
+			}
+		}
+	}
+
+	/*
+	 * Tabla de simbolos, hasta el final o hasta la seccion de comentarios
+	 */
+	private void readSymbols(int[] inputEdges, int[] latchEdges) throws IOException {
+		int b;
+		while ((b = nextByte()) >= 0 && b != 'c') {
+			if (b == '\n') {
+				continue;
+			}
+			int index = number();
+			String name = restOfLine();
+			if (!name.matches("[A-Za-z][A-Za-z0-9_]*")) {
+				continue;
+			}
+			if (b == 'i' && index < inputEdges.length) {
+				graph.rename(inputEdges[index], new PropositionSymbol(name));
+			} else if (b == 'l' && index < latchEdges.length) {
+				graph.rename(latchEdges[index], new PropositionSymbol(name));
+			}
+		}
+	}
+
+	//
+	// LECTURA
+	//
+
+	private int nextByte() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return buffer.get() & 0xff;
+	}
+
+	private int peekByte() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return buffer.get(buffer.position()) & 0xff;
+	}
+
+	private boolean fill() throws IOException {
+		if (!buffer.hasRemaining()) {
+			buffer.clear();
+			int read;
+			do {
+				read = channel.read(buffer);
+			} while (read == 0);
+			buffer.flip();
+			if (read < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void skipSpaces() throws IOException {
+		while (peekByte() == ' ') {
+			buffer.get();
+		}
+	}
+
+	private boolean atEndOfLine() throws IOException {
+		skipSpaces();
+		int b = peekByte();
+		return b == '\n' || b == '\r' || b < 0;
+	}
+
+	private void endLine() throws IOException {
+		if (!atEndOfLine()) {
+			throw error("se esperaba el final de la linea");
+		}
+		int b;
+		while ((b = nextByte()) >= 0 && b != '\n') {
+			continue;
+		}
+	}
+
+	private int number() throws IOException {
+		skipSpaces();
+		long value = 0;
+		int digits = 0;
+		int b;
+		while ((b = peekByte()) >= '0' && b <= '9') {
+			buffer.get();
+			value = 10 * value + (b - '0');
+			if (value > Integer.MAX_VALUE) {
+				throw error("numero demasiado grande");
+			}
+			digits++;
+		}
+		if (digits == 0) {
+			throw error("se esperaba un numero");
+		}
+		return (int) value;
+	}
+
+	private String word() throws IOException {
+		skipSpaces();
+		StringBuilder sb = new StringBuilder();
+		int b;
+		while ((b = peekByte()) > ' ') {
+			sb.append((char) buffer.get());
+		}
+		return sb.toString();
+	}
+
+	private String restOfLine() throws IOException {
+		skipSpaces();
+		StringBuilder sb = new StringBuilder();
+		int b;
+		while ((b = nextByte()) >= 0 && b != '\n') {
+			sb.append((char) b);
+		}
+		return sb.toString().trim();
+	}
+
+	/*
+	 * Diferencia codificada en grupos de 7 bits, de menor a mayor peso
+	 */
+	private int delta() throws IOException {
+		int x = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = nextByte();
+			if (b < 0) {
+				throw error("fichero binario incompleto");
+			}
+			x |= (b & 0x7f) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return x;
+	}
+
+	private IOException error(String message) {
+		return new IOException("Circuito AIGER no valido: " + message);
+	}
+}
@@ -0,0 +1,404 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Grafo de puertas AND con aristas que pueden estar negadas, en el que se
+ * representan formulas generales antes de pasarlas a CNF.
+ *
+ * Como en AIGER, cada arista es un entero 2*n + c, donde n es el nodo y c
+ * vale 1 si la arista esta negada. El nodo 0 es la constante falsa, asi que
+ * FALSE = 0 y TRUE = 1. Los demas nodos son entradas, con un simbolo, o
+ * puertas AND de dos aristas. El resto de conectivas se expresan con AND y
+ * negaciones.
+ *
+ * Las puertas se crean con hashing estructural: pedir dos veces el AND de
+ * las mismas aristas devuelve el mismo nodo, asi que las subformulas
+ * repetidas se comparten. Al crearlas se simplifican las constantes y las
+ * aristas iguales u opuestas, tambien contra las entradas de una puerta
+ * hija: a * (a * x) = a * x, a * (-a * x) = False, a * -(-a * x) = a y
+ * a * -(a * x) = a * -x.
+ */
+public class AndInverterGraph {
+
+	public static final int FALSE = 0;
+	public static final int TRUE = 1;
+
+	/* Marca de entrada en fanin0 */
+	private static final int INPUT = -1;
+
+	/* Polaridades ya codificadas de cada nodo */
+	private static final byte POSITIVE = 1;
+	private static final byte NEGATIVE = 2;
+
+	private int numNodes = 1;
+	private int numInputs = 0;
+	private int[] fanin0 = new int[16];
+	private int[] fanin1 = new int[16];
+	private int[] fanout = new int[16];
+	private PropositionSymbol[] symbols = new PropositionSymbol[16];
+	private Map<PropositionSymbol, Integer> inputs = new HashMap<PropositionSymbol, Integer>();
+
+	/* Tabla hash abierta de puertas: 0 es hueco libre */
+	private int[] table = new int[64];
+	private int tableCount = 0;
+
+	/* Traduccion a CNF */
+	private String prefix;
+	private boolean definitional = false;
+	private byte[] encoded = new byte[16];
+	private PropositionSymbol[] auxiliary = new PropositionSymbol[16];
+	private int[] pending = new int[16];
+	private int pendingCount = 0;
+
+	/**
+	 * @param prefix
+	 *            prefijo de los simbolos auxiliares de la traduccion a CNF,
+	 *            que se llaman prefix seguido del numero de nodo.
+	 */
+	public AndInverterGraph(String prefix) {
+		this.prefix = prefix;
+	}
+
+	public static int not(int edge) {
+		return edge ^ 1;
+	}
+
+	/**
+	 * Devuelve la arista de la entrada con ese simbolo, creandola si no
+	 * existe.
+	 */
+	public int input(PropositionSymbol symbol) {
+		if (symbol.isAlwaysTrue()) {
+			return TRUE;
+		} else if (symbol.isAlwaysFalse()) {
+			return FALSE;
+		}
+		Integer node = inputs.get(symbol);
+		if (node == null) {
+			node = newNode(INPUT, INPUT);
+			symbols[node] = symbol;
+			inputs.put(symbol, node);
+			numInputs++;
+		}
+		return 2 * node;
+	}
+
+	public int and(int a, int b) {
+		if (a > b) {
+			int tmp = a;
+			a = b;
+			b = tmp;
+		}
+		if (a == FALSE || a == not(b)) {
+			return FALSE;
+		}
+		if (a == TRUE || a == b) {
+			return b;
+		}
+		int rewritten = rewrite(a, b);
+		if (rewritten < 0) {
+			rewritten = rewrite(b, a);
+		}
+		if (rewritten >= 0) {
+			return rewritten;
+		}
+		int slot = slot(a, b);
+		if (table[slot] != 0) {
+			return 2 * table[slot];
+		}
+		int node = newNode(a, b);
+		fanout[a >> 1]++;
+		fanout[b >> 1]++;
+		table[slot] = node;
+		if (++tableCount * 2 > table.length) {
+			rehash();
+		}
+		return 2 * node;
+	}
+
+	/**
+	 * Renombra una entrada, si no hay otra con ese simbolo.
+	 *
+	 * @return true si se ha renombrado.
+	 */
+	public boolean rename(int edge, PropositionSymbol symbol) {
+		if (!isInput(edge) || inputs.containsKey(symbol) || symbol.isAlwaysTrue() || symbol.isAlwaysFalse()) {
+			return false;
+		}
+		int node = edge >> 1;
+		inputs.remove(symbols[node]);
+		symbols[node] = symbol;
+		inputs.put(symbol, node);
+		return true;
+	}
+
+	public int or(int a, int b) {
+		return not(and(not(a), not(b)));
+	}
+
+	public int implies(int a, int b) {
+		return or(not(a), b);
+	}
+
+	public int iff(int a, int b) {
+		return and(implies(a, b), implies(b, a));
+	}
+
+	public int xor(int a, int b) {
+		return not(iff(a, b));
+	}
+
+	public boolean isAnd(int edge) {
+		return edge > TRUE && fanin0[edge >> 1] != INPUT;
+	}
+
+	public boolean isInput(int edge) {
+		return edge > TRUE && fanin0[edge >> 1] == INPUT;
+	}
+
+	public int getFanin0(int edge) {
+		return fanin0[edge >> 1];
+	}
+
+	public int getFanin1(int edge) {
+		return fanin1[edge >> 1];
+	}
+
+	/**
+	 * @return el simbolo de una arista de entrada.
+	 */
+	public PropositionSymbol getSymbol(int edge) {
+		return symbols[edge >> 1];
+	}
+
+	/**
+	 * @return los simbolos de las entradas, aunque alguna no aparezca en
+	 *         ninguna puerta.
+	 */
+	public Collection<PropositionSymbol> getInputSymbols() {
+		return inputs.keySet();
+	}
+
+	public int getNumInputs() {
+		return numInputs;
+	}
+
+	public int getNumAnds() {
+		return numNodes - 1 - numInputs;
+	}
+
+	/**
+	 * Traduce tambien el sentido de cada definicion que no hace falta para
+	 * la satisfacibilidad, de modo que los simbolos auxiliares quedan
+	 * determinados y se conserva el numero de modelos.
+	 */
+	public void setDefinitional(boolean definitional) {
+		this.definitional = definitional;
+	}
+
+	/**
+	 * Anade a out clausulas que obligan a que la arista sea cierta.
+	 *
+	 * Es la traduccion de Tseitin con las polaridades de Plaisted-Greenbaum:
+	 * una puerta que solo aparece en positivo se define con v -> AND, y una
+	 * que solo aparece negada con AND -> v. Las cadenas de AND sin negar
+	 * cuyos nodos no se comparten se juntan en una sola puerta de varias
+	 * entradas, y los AND y OR del nivel superior se escriben directamente
+	 * como clausulas, sin variable auxiliar. Cada nodo se codifica una sola
+	 * vez por polaridad aunque se llame varias veces.
+	 */
+	public void toClauses(int root, List<Clause> out) {
+		ensureEncoding();
+		List<Integer> stack = new ArrayList<Integer>();
+		stack.add(root);
+		while (!stack.isEmpty()) {
+			int edge = stack.remove(stack.size() - 1);
+			if (edge == TRUE) {
+				continue;
+			} else if (edge == FALSE) {
+				out.add(new Clause());
+			} else if (isInput(edge)) {
+				out.add(new Clause(literal(edge)));
+			} else if ((edge & 1) == 0) {
+				/* AND cierto: cada entrada debe serlo */
+				stack.add(getFanin0(edge));
+				stack.add(getFanin1(edge));
+			} else {
+				/* OR de las entradas negadas */
+				List<Literal> lits = new ArrayList<Literal>();
+				for (int leaf : leaves(edge >> 1)) {
+					lits.add(literal(not(leaf)));
+				}
+				out.add(new Clause(lits));
+			}
+		}
+		/* Definiciones de las puertas que se han usado */
+		while (pendingCount > 0) {
+			int item = pending[--pendingCount];
+			int node = item >> 1;
+			Literal v = new Literal(auxiliary[node]);
+			List<Integer> leaves = leaves(node);
+			if ((item & 1) == 0) {
+				/* v -> l para cada entrada l */
+				for (int leaf : leaves) {
+					out.add(new Clause(new Literal(v.getAtomicSentence(), false), literal(leaf)));
+				}
+			} else {
+				/* Todas las entradas -> v */
+				List<Literal> lits = new ArrayList<Literal>(leaves.size() + 1);
+				lits.add(v);
+				for (int leaf : leaves) {
+					lits.add(literal(not(leaf)));
+				}
+				out.add(new Clause(lits));
+			}
+		}
+	}
+
+	/*
+	 * Literal de la arista para usarlo en una clausula. Si es una puerta,
+	 * encola su definicion en la polaridad necesaria
+	 */
+	private Literal literal(int edge) {
+		int node = edge >> 1;
+		boolean positive = (edge & 1) == 0;
+		if (fanin0[node] == INPUT) {
+			return new Literal(symbols[node], positive);
+		}
+		if (auxiliary[node] == null) {
+			auxiliary[node] = new PropositionSymbol(prefix + node);
+		}
+		if (definitional) {
+			require(node, POSITIVE);
+			require(node, NEGATIVE);
+		} else {
+			require(node, positive ? POSITIVE : NEGATIVE);
+		}
+		return new Literal(auxiliary[node], positive);
+	}
+
+	private void require(int node, byte polarity) {
+		if ((encoded[node] & polarity) != 0) {
+			return;
+		}
+		encoded[node] |= polarity;
+		if (pendingCount == pending.length) {
+			pending = Arrays.copyOf(pending, 2 * pendingCount);
+		}
+		pending[pendingCount++] = 2 * node + (polarity == POSITIVE ? 0 : 1);
+	}
+
+	/*
+	 * Entradas del AND del nodo, atravesando las aristas sin negar hacia
+	 * puertas que no tienen otro padre
+	 */
+	private List<Integer> leaves(int node) {
+		List<Integer> result = new ArrayList<Integer>();
+		List<Integer> stack = new ArrayList<Integer>();
+		stack.add(fanin1[node]);
+		stack.add(fanin0[node]);
+		while (!stack.isEmpty()) {
+			int edge = stack.remove(stack.size() - 1);
+			if ((edge & 1) == 0 && isAnd(edge) && fanout[edge >> 1] == 1) {
+				stack.add(getFanin1(edge));
+				stack.add(getFanin0(edge));
+			} else {
+				result.add(edge);
+			}
+		}
+		return result;
+	}
+
+	//
+	// NODOS
+	//
+
+	/*
+	 * Simplifica a * b mirando las entradas de b si es una puerta. Devuelve
+	 * -1 si no se puede
+	 */
+	private int rewrite(int a, int b) {
+		if (!isAnd(b)) {
+			return -1;
+		}
+		int p = getFanin0(b);
+		int q = getFanin1(b);
+		if ((b & 1) == 0) {
+			if (p == a || q == a) {
+				return b;
+			}
+			if (p == not(a) || q == not(a)) {
+				return FALSE;
+			}
+		} else {
+			if (p == not(a) || q == not(a)) {
+				return a;
+			}
+			if (p == a) {
+				return and(a, not(q));
+			}
+			if (q == a) {
+				return and(a, not(p));
+			}
+		}
+		return -1;
+	}
+
+	private int newNode(int a, int b) {
+		if (numNodes == fanin0.length) {
+			int capacity = 2 * numNodes;
+			fanin0 = Arrays.copyOf(fanin0, capacity);
+			fanin1 = Arrays.copyOf(fanin1, capacity);
+			fanout = Arrays.copyOf(fanout, capacity);
+			symbols = Arrays.copyOf(symbols, capacity);
+		}
+		fanin0[numNodes] = a;
+		fanin1[numNodes] = b;
+		return numNodes++;
+	}
+
+	private void ensureEncoding() {
+		if (encoded.length < numNodes) {
+			encoded = Arrays.copyOf(encoded, fanin0.length);
+			auxiliary = Arrays.copyOf(auxiliary, fanin0.length);
+		}
+	}
+
+	/*
+	 * Hueco de la puerta (a, b): el que ya la contiene o el primero libre
+	 */
+	private int slot(int a, int b) {
+		int mask = table.length - 1;
+		int i = hash(a, b) & mask;
+		while (table[i] != 0 && (fanin0[table[i]] != a || fanin1[table[i]] != b)) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void rehash() {
+		int[] old = table;
+		table = new int[2 * old.length];
+		int mask = table.length - 1;
+		for (int node : old) {
+			if (node != 0) {
+				int i = hash(fanin0[node], fanin1[node]) & mask;
+				while (table[i] != 0) {
+					i = (i + 1) & mask;
+				}
+				table[i] = node;
+			}
+		}
+	}
+
+	private static int hash(int a, int b) {
+		int h = a * 0x9E3779B1 + b * 0x85EBCA77;
+		return h ^ (h >>> 15);
+	}
+}
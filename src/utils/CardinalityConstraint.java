@@ -0,0 +1,157 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Restriccion de cardinalidad: a lo sumo bound de los literales son
+ * ciertos. Las de "al menos k" se expresan como "a lo sumo n-k" de los
+ * literales opuestos.
+ *
+ * {@link algorithms.CDCLSat} las propaga directamente con un contador. Para
+ * los demas algoritmos se traducen a clausulas con un contador secuencial,
+ * de tamano proporcional a n*bound en lugar de las n^2 clausulas de la
+ * codificacion por parejas.
+ */
+public class CardinalityConstraint {
+
+	private List<Literal> literals;
+	private int bound;
+
+	/**
+	 * @param literals
+	 *            literales distintos de la restriccion.
+	 * @param bound
+	 *            numero maximo de literales ciertos.
+	 */
+	public CardinalityConstraint(List<Literal> literals, int bound) {
+		this.literals = literals;
+		this.bound = bound;
+	}
+
+	/**
+	 * A lo sumo k de los literales son ciertos.
+	 */
+	public static CardinalityConstraint atMost(int k, List<Literal> literals) {
+		return new CardinalityConstraint(literals, k);
+	}
+
+	/**
+	 * Al menos k de los literales son ciertos.
+	 */
+	public static CardinalityConstraint atLeast(int k, List<Literal> literals) {
+		List<Literal> negated = new ArrayList<Literal>(literals.size());
+		for (Literal l : literals) {
+			negated.add(new Literal(l.getAtomicSentence(), !l.isPositiveLiteral()));
+		}
+		return new CardinalityConstraint(negated, literals.size() - k);
+	}
+
+	public List<Literal> getLiterals() {
+		return literals;
+	}
+
+	public int getBound() {
+		return bound;
+	}
+
+	/**
+	 * Traduce la restriccion a clausulas con un contador secuencial. La
+	 * variable auxiliar s(i,j) equivale a "al menos j de los i primeros
+	 * literales son ciertos", asi que su valor queda determinado por el de
+	 * los literales y la traduccion conserva el numero de modelos. Si la
+	 * cota pasa de la mitad, se cuenta cuantos literales son falsos, que es
+	 * mas corto.
+	 *
+	 * @param prefix
+	 *            prefijo de los simbolos auxiliares; debe ser distinto para
+	 *            cada restriccion de la formula.
+	 */
+	public List<Clause> toClauses(String prefix) {
+		List<Clause> result = new ArrayList<Clause>();
+		int n = literals.size();
+		if (bound >= n) {
+			return result;
+		}
+		if (bound < 0) {
+			result.add(new Clause());
+		} else if (bound == 0) {
+			for (Literal l : literals) {
+				result.add(new Clause(negate(l)));
+			}
+		} else if (bound == n - 1) {
+			/* Alguno es falso */
+			List<Literal> negated = new ArrayList<Literal>(n);
+			for (Literal l : literals) {
+				negated.add(negate(l));
+			}
+			result.add(new Clause(negated));
+		} else if (bound > n / 2) {
+			/* Al menos n-bound de los opuestos son ciertos */
+			List<Literal> negated = new ArrayList<Literal>(n);
+			for (Literal l : literals) {
+				negated.add(negate(l));
+			}
+			Literal[][] s = counter(negated, n - bound, prefix, result);
+			result.add(new Clause(s[n][n - bound]));
+		} else {
+			Literal[][] s = counter(literals, bound, prefix, result);
+			/* x_i no puede ser el literal cierto numero bound+1 */
+			for (int i = bound + 1; i <= n; i++) {
+				result.add(new Clause(negate(literals.get(i - 1)), negate(s[i - 1][bound])));
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Anade las definiciones de s(i,j) para 1 <= j <= min(i, k), con
+	 * s(i,j) = s(i-1,j) o (x_i y s(i-1,j-1)). Las que quedan fuera son
+	 * constantes: s(i,0) es cierta y s(i,j) con j > i es falsa
+	 */
+	private static Literal[][] counter(List<Literal> xs, int k, String prefix, List<Clause> result) {
+		int n = xs.size();
+		Literal[][] s = new Literal[n + 1][k + 1];
+		for (int i = 1; i <= n; i++) {
+			for (int j = 1; j <= Math.min(i, k); j++) {
+				s[i][j] = new Literal(new PropositionSymbol(prefix + "_" + i + "_" + j));
+			}
+		}
+		for (int i = 1; i <= n; i++) {
+			Literal x = xs.get(i - 1);
+			for (int j = 1; j <= Math.min(i, k); j++) {
+				/* s(i-1,j) o (x_i y s(i-1,j-1)) implican s(i,j) */
+				if (s[i - 1][j] != null) {
+					result.add(new Clause(negate(s[i - 1][j]), s[i][j]));
+				}
+				if (j == 1) {
+					result.add(new Clause(negate(x), s[i][j]));
+				} else {
+					result.add(new Clause(negate(x), negate(s[i - 1][j - 1]), s[i][j]));
+				}
+				/* s(i,j) implica s(i-1,j) o x_i, y s(i-1,j) o s(i-1,j-1) */
+				result.add(s[i - 1][j] != null ? new Clause(negate(s[i][j]), s[i - 1][j], x)
+						: new Clause(negate(s[i][j]), x));
+				if (j > 1) {
+					result.add(s[i - 1][j] != null ? new Clause(negate(s[i][j]), s[i - 1][j], s[i - 1][j - 1])
+							: new Clause(negate(s[i][j]), s[i - 1][j - 1]));
+				}
+			}
+		}
+		return s;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("atmost(" + bound + ";");
+		for (int i = 0; i < literals.size(); i++) {
+			Literal l = literals.get(i);
+			sb.append(i > 0 ? "," : "").append(l.isPositiveLiteral() ? "" : "-").append(l.getAtomicSentence());
+		}
+		return sb.append(")").toString();
+	}
+
+	private static Literal negate(Literal l) {
+		return new Literal(l.getAtomicSentence(), !l.isPositiveLiteral());
+	}
+}
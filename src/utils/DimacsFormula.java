@@ -0,0 +1,186 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Formula CNF con los simbolos numerados, en la forma que usan los
+ * algoritmos que trabajan con enteros: cada variable es un numero entre 1 y
+ * getNumVariables(), y cada literal es la variable o su opuesto si esta
+ * negada, como en el formato DIMACS.
+ */
+public class DimacsFormula {
+
+	private Map<PropositionSymbol, Integer> variables = new HashMap<PropositionSymbol, Integer>();
+
+	/* symbols.get(v - 1) es el simbolo de la variable v */
+	private ArrayList<PropositionSymbol> symbols = new ArrayList<PropositionSymbol>();
+
+	private ArrayList<int[]> clauses = new ArrayList<int[]>();
+
+	private ArrayList<CardinalityConstraint> cardinality = new ArrayList<CardinalityConstraint>();
+
+	private ArrayList<XorConstraint> xors = new ArrayList<XorConstraint>();
+
+	/**
+	 * Crea una formula vacia.
+	 */
+	public DimacsFormula() {
+	}
+
+	/**
+	 * Crea la formula equivalente a una lista de clausulas, numerando los
+	 * simbolos en orden de aparicion.
+	 */
+	public DimacsFormula(List<Clause> sentence) {
+		for (Clause clausula : sentence) {
+			addClause(toLiterals(clausula));
+		}
+	}
+
+	/**
+	 * Devuelve la variable asociada al simbolo, creandola si no existe.
+	 */
+	public int getVariable(PropositionSymbol symbol) {
+		Integer v = variables.get(symbol);
+		if (v == null) {
+			symbols.add(symbol);
+			v = symbols.size();
+			variables.put(symbol, v);
+		}
+		return v;
+	}
+
+	/**
+	 * @return true si el simbolo tiene una variable asociada.
+	 */
+	public boolean hasVariable(PropositionSymbol symbol) {
+		return variables.containsKey(symbol);
+	}
+
+	/**
+	 * @return el simbolo asociado a la variable v.
+	 */
+	public PropositionSymbol getSymbol(int v) {
+		return symbols.get(v - 1);
+	}
+
+	public int getNumVariables() {
+		return symbols.size();
+	}
+
+	/**
+	 * Anade una clausula expresada como array de literales.
+	 */
+	public void addClause(int[] literals) {
+		clauses.add(literals);
+	}
+
+	public List<int[]> getClauses() {
+		return clauses;
+	}
+
+	/**
+	 * Anade una restriccion de cardinalidad, numerando sus simbolos.
+	 */
+	public void addCardinalityConstraint(CardinalityConstraint constraint) {
+		for (Literal l : constraint.getLiterals()) {
+			getVariable(l.getAtomicSentence());
+		}
+		cardinality.add(constraint);
+	}
+
+	public List<CardinalityConstraint> getCardinalityConstraints() {
+		return cardinality;
+	}
+
+	/**
+	 * Anade una restriccion de paridad, numerando sus simbolos.
+	 */
+	public void addXorConstraint(XorConstraint constraint) {
+		for (PropositionSymbol symbol : constraint.getVariables()) {
+			getVariable(symbol);
+		}
+		xors.add(constraint);
+	}
+
+	public List<XorConstraint> getXorConstraints() {
+		return xors;
+	}
+
+	public int getNumClauses() {
+		return clauses.size();
+	}
+
+	public int toLiteral(Literal l) {
+		int v = getVariable(l.getAtomicSentence());
+		return l.isPositiveLiteral() ? v : -v;
+	}
+
+	public Literal toLiteral(int lit) {
+		return new Literal(getSymbol(Math.abs(lit)), lit > 0);
+	}
+
+	public int[] toLiterals(Clause clausula) {
+		int[] literals = new int[clausula.getNumberLiterals()];
+		int i = 0;
+		for (Literal l : clausula.getLiterals()) {
+			literals[i++] = toLiteral(l);
+		}
+		return literals;
+	}
+
+	public Clause toClause(int[] literals) {
+		List<Literal> lits = new ArrayList<Literal>(literals.length);
+		for (int lit : literals) {
+			lits.add(toLiteral(lit));
+		}
+		return new Clause(lits);
+	}
+
+	/**
+	 * Devuelve el modelo correspondiente a una asignacion indexada por
+	 * variable (la posicion 0 no se usa).
+	 */
+	public Model toModel(boolean[] values) {
+		Model model = new Model();
+		for (int v = 1; v <= symbols.size() && v < values.length; v++) {
+			model.unionInPlace(getSymbol(v), values[v]);
+		}
+		return model;
+	}
+
+	/**
+	 * Posicion de un literal en los arrays indexados por literal: 2v para v
+	 * y 2v + 1 para -v, asi que bastan 2 * getNumVariables() + 2 posiciones.
+	 */
+	public static int index(int lit) {
+		return lit > 0 ? 2 * lit : -2 * lit + 1;
+	}
+
+	/**
+	 * @return una copia de la clausula con los literales ordenados y sin
+	 *         repetir, o null si es una tautologia.
+	 */
+	public static int[] normalize(int[] literals) {
+		int[] lits = literals.clone();
+		Arrays.sort(lits);
+		int n = 0;
+		for (int i = 0; i < lits.length; i++) {
+			if (n > 0 && lits[n - 1] == lits[i]) {
+				continue;
+			}
+			lits[n++] = lits[i];
+		}
+		lits = Arrays.copyOf(lits, n);
+		for (int lit : lits) {
+			if (lit > 0 && Arrays.binarySearch(lits, -lit) >= 0) {
+				return null;
+			}
+		}
+		return lits;
+	}
+}
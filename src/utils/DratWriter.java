@@ -0,0 +1,206 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Escribe una prueba DRAT en formato binario: cada clausula anadida es el
+ * byte 'a' y cada borrada el byte 'd', seguidos de sus literales y un cero.
+ * Cada literal l se codifica como el numero 2*|l| (+1 si es negativo), en
+ * grupos de 7 bits de menor a mayor peso, con el bit alto a 1 en todos los
+ * grupos menos el ultimo.
+ *
+ * Quien busca solo codifica en un buffer. Cuando se llena, lo pasa a un
+ * hilo que lo escribe en el fichero y coge otro de una reserva fija, asi
+ * que la busqueda solo espera si el disco no da abasto con todos ellos.
+ */
+public class DratWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int BUFFERS = 4;
+
+	/* Marca el final de la prueba para el hilo que escribe */
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+	private final FileChannel channel;
+	private final BlockingQueue<ByteBuffer> full = new ArrayBlockingQueue<ByteBuffer>(BUFFERS + 1);
+	private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<ByteBuffer>(BUFFERS);
+	private final Thread writer;
+	private ByteBuffer current;
+	private volatile IOException error = null;
+	private boolean closed = false;
+
+	private long additions = 0;
+	private long deletions = 0;
+	private long bytes = 0;
+
+	/**
+	 * Crea el fichero de la prueba, o lo vacia si ya existe.
+	 */
+	public DratWriter(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		this.current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		for (int i = 1; i < BUFFERS; i++) {
+			free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+		}
+		this.writer = new Thread(new Runnable() {
+			public void run() {
+				write();
+			}
+		}, "drat-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Anade a la prueba los size primeros literales de la clausula.
+	 */
+	public void add(int[] lits, int size) {
+		additions++;
+		record('a', lits, size);
+	}
+
+	/**
+	 * Borra de la prueba los size primeros literales de la clausula.
+	 */
+	public void delete(int[] lits, int size) {
+		deletions++;
+		record('d', lits, size);
+	}
+
+	/**
+	 * Escribe lo que queda en el fichero y lo cierra.
+	 *
+	 * @throws IOException
+	 *             si ha fallado alguna escritura.
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		boolean interrupted = false;
+		try {
+			handOff(current);
+			full.put(END);
+			writer.join();
+		} catch (InterruptedException e) {
+			interrupted = true;
+		} finally {
+			channel.close();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Escritura de la prueba interrumpida");
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	public long getAdditions() {
+		return additions;
+	}
+
+	public long getDeletions() {
+		return deletions;
+	}
+
+	/**
+	 * @return bytes escritos en la prueba.
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	private void record(char type, int[] lits, int size) {
+		if (closed || error != null) {
+			return;
+		}
+		/* Como mucho 5 bytes por literal, mas el tipo y el cero final */
+		int needed = 5 * size + 2;
+		if (current.remaining() < needed) {
+			try {
+				handOff(current);
+				current = needed > BUFFER_SIZE ? ByteBuffer.allocateDirect(needed) : free.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				error = new IOException("Escritura de la prueba interrumpida");
+				return;
+			}
+		}
+		int start = current.position();
+		current.put((byte) type);
+		for (int i = 0; i < size; i++) {
+			int lit = lits[i];
+			int u = lit > 0 ? 2 * lit : -2 * lit + 1;
+			while ((u & ~0x7f) != 0) {
+				current.put((byte) ((u & 0x7f) | 0x80));
+				u >>>= 7;
+			}
+			current.put((byte) u);
+		}
+		current.put((byte) 0);
+		bytes += current.position() - start;
+	}
+
+	private void handOff(ByteBuffer buffer) throws InterruptedException {
+		buffer.flip();
+		full.put(buffer);
+	}
+
+	/*
+	 * Hilo que escribe los buffers llenos y los devuelve a la reserva
+	 */
+	private void write() {
+		try {
+			while (true) {
+				ByteBuffer buffer = full.take();
+				if (buffer == END) {
+					return;
+				}
+				while (buffer.hasRemaining() && error == null) {
+					channel.write(buffer);
+				}
+				buffer.clear();
+				/* Los buffers de clausulas muy largas no vuelven a la reserva */
+				if (buffer.capacity() == BUFFER_SIZE) {
+					free.put(buffer);
+				}
+			}
+		} catch (IOException e) {
+			error = e;
+			drain();
+		} catch (InterruptedException e) {
+			error = new IOException("Escritura de la prueba interrumpida");
+		}
+	}
+
+	/*
+	 * Tras un error, sigue devolviendo buffers para que la busqueda no se
+	 * quede esperando
+	 */
+	private void drain() {
+		try {
+			while (true) {
+				ByteBuffer buffer = full.take();
+				if (buffer == END) {
+					return;
+				}
+				buffer.clear();
+				if (buffer.capacity() == BUFFER_SIZE) {
+					free.put(buffer);
+				}
+			}
+		} catch (InterruptedException e) {
+			return;
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package utils;
+
+/**
+ * Lee formulas proposicionales generales y las construye directamente en un
+ * {@link AndInverterGraph}, sin arbol sintactico intermedio.
+ *
+ * Conectivas, de mas a menos prioridad: negacion (-), disyuncion (+),
+ * conjuncion (*), implicacion (->, asociativa por la derecha) y
+ * equivalencia (<->). Como en la entrada CNF, la disyuncion tiene mas
+ * prioridad que la conjuncion, asi que una formula CNF significa lo mismo
+ * leida como formula general. Las constantes son True y False.
+ */
+public class FormulaParser {
+
+	private AndInverterGraph graph;
+	private String text;
+	private int pos;
+
+	public FormulaParser(AndInverterGraph graph) {
+		this.graph = graph;
+	}
+
+	/**
+	 * @return la arista del grafo equivalente a la formula.
+	 * @throws IllegalArgumentException
+	 *             si la formula no es correcta.
+	 */
+	public int parse(String formula) {
+		text = formula;
+		pos = 0;
+		int result = equivalence();
+		skipSpaces();
+		if (pos < text.length()) {
+			throw error();
+		}
+		return result;
+	}
+
+	private int equivalence() {
+		int result = implication();
+		while (accept("<->")) {
+			result = graph.iff(result, implication());
+		}
+		return result;
+	}
+
+	private int implication() {
+		int result = conjunction();
+		if (accept("->")) {
+			result = graph.implies(result, implication());
+		}
+		return result;
+	}
+
+	private int conjunction() {
+		int result = disjunction();
+		while (accept("*")) {
+			result = graph.and(result, disjunction());
+		}
+		return result;
+	}
+
+	private int disjunction() {
+		int result = negation();
+		while (accept("+")) {
+			result = graph.or(result, negation());
+		}
+		return result;
+	}
+
+	private int negation() {
+		int negations = 0;
+		skipSpaces();
+		while (pos < text.length() && text.charAt(pos) == '-' && !text.startsWith("->", pos)) {
+			negations++;
+			pos++;
+			skipSpaces();
+		}
+		int result = atom();
+		return negations % 2 == 0 ? result : AndInverterGraph.not(result);
+	}
+
+	private int atom() {
+		if (accept("(")) {
+			int result = equivalence();
+			if (!accept(")")) {
+				throw error();
+			}
+			return result;
+		}
+		int start = pos;
+		/* Las variables empiezan por letra, y pueden contener letras, numeros y _ */
+		if (pos < text.length() && isLetter(text.charAt(pos))) {
+			while (pos < text.length() && (isLetter(text.charAt(pos)) || text.charAt(pos) == '_'
+					|| (text.charAt(pos) >= '0' && text.charAt(pos) <= '9'))) {
+				pos++;
+			}
+		}
+		if (pos == start) {
+			throw error();
+		}
+		return graph.input(new PropositionSymbol(text.substring(start, pos)));
+	}
+
+	private boolean accept(String token) {
+		skipSpaces();
+		if (text.startsWith(token, pos)) {
+			pos += token.length();
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean isLetter(char c) {
+		return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+	}
+
+	private void skipSpaces() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	private IllegalArgumentException error() {
+		return new IllegalArgumentException("Formula incorrecta en la posicion " + pos + ": " + text);
+	}
+}
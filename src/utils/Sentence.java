@@ -3,54 +3,56 @@ package utils;
 import java.util.ArrayList;
 
 public class Sentence {
-	
+
 	private ArrayList<Clause> clauses;
-	
+
+	/* Perfil de la sentencia, calculado la primera vez que se necesita */
+	private SentenceProfile profile = null;
+
+	/**
+	 * Crea una sentencia a partir de una lista de clausulas, que no
+	 * debe modificarse despues para que el perfil calculado siga siendo valido.
+	 */
 	public Sentence(ArrayList<Clause> entry){
 		clauses = entry;
 	}
-	
+
+	/**
+	 * Obtiene el perfil de la sentencia, calculandolo en una unica pasada
+	 * la primera vez que se pide
+	 */
+	public SentenceProfile getProfile(){
+		if (profile == null) {
+			profile = new SentenceProfile(clauses);
+		}
+		return profile;
+	}
+
 	/**
 	 * Comprueba que la sentencia es 2-SAT
 	 */
 	public boolean checkTwoSat(){
-		for(Clause clausula : clauses){
-			if(clausula.getLiterals().size() > 2)
-				return false;
-		}		
-		return true;
+		return getProfile().isTwoSat();
 	}
-	
+
 	/**
 	 * Comprueba que la sentencia es Horn-SAT
 	 */
 	public boolean checkHornSat(){
-		for(Clause clausula : clauses){
-			if(!clausula.isHornClause())
-				return false;
-		}		
-		return true;
+		return getProfile().isHorn();
 	}
-	
+
 	/**
 	 * Obtiene un arraylist con los literales (sin repeticiones)
 	 */
 	public ArrayList<PropositionSymbol> getUniqueSymbols(){
-		ArrayList<PropositionSymbol> symbolArray = new ArrayList<PropositionSymbol>();
-		for (Clause clause : clauses) {
-			for (Literal lit : clause.getLiterals()) {
-				if(!symbolArray.contains(lit.getAtomicSentence())){
-					symbolArray.add(lit.getAtomicSentence());
-				}				
-			}			
-		}
-		return symbolArray;
+		return getProfile().getSymbols();
 	}
 
 	public ArrayList<Clause> getClauses() {
 		return clauses;
 	}
-	
-	
+
+
 
 }
@@ -0,0 +1,190 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Perfil de una sentencia calculado en una unica pasada lineal sobre sus
+ * clausulas: histograma de longitudes, numero de variables y de apariciones
+ * de cada una, y las propiedades que deciden que algoritmo se puede usar
+ * (2-SAT y Horn).
+ */
+public class SentenceProfile {
+
+	private List<Clause> clauses;
+
+	/* Simbolos en orden de aparicion, con su indice */
+	private Map<PropositionSymbol, Integer> symbols = new LinkedHashMap<PropositionSymbol, Integer>();
+
+	/* Apariciones positivas y negativas de cada simbolo */
+	private int[] positiveOccurrences = new int[16];
+	private int[] negativeOccurrences = new int[16];
+
+	/* lengthHistogram[k] = numero de clausulas con k literales */
+	private int[] lengthHistogram = new int[4];
+	private int numLiterals = 0;
+	private int maxClauseLength = 0;
+	private int hornClauses = 0;
+
+	private boolean twoSat = true;
+	private boolean horn = true;
+
+	/**
+	 * Calcula el perfil de las clausulas indicadas.
+	 */
+	public SentenceProfile(List<Clause> clauses) {
+		this.clauses = clauses;
+		for (Clause clausula : clauses) {
+			int length = clausula.getNumberLiterals();
+			if (length >= lengthHistogram.length) {
+				lengthHistogram = Arrays.copyOf(lengthHistogram, Math.max(length + 1, lengthHistogram.length * 2));
+			}
+			lengthHistogram[length]++;
+			numLiterals += length;
+			if (length > maxClauseLength) {
+				maxClauseLength = length;
+			}
+			if (length > 2) {
+				twoSat = false;
+			}
+			if (clausula.isHornClause()) {
+				hornClauses++;
+			} else {
+				horn = false;
+			}
+
+			for (Literal l : clausula.getLiterals()) {
+				int v = index(l.getAtomicSentence());
+				if (l.isPositiveLiteral()) {
+					positiveOccurrences[v]++;
+				} else {
+					negativeOccurrences[v]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true si ninguna clausula tiene mas de dos literales.
+	 */
+	public boolean isTwoSat() {
+		return twoSat;
+	}
+
+	/**
+	 * @return true si todas las clausulas son de Horn.
+	 */
+	public boolean isHorn() {
+		return horn;
+	}
+
+	/**
+	 * @return los simbolos de la sentencia, sin repeticiones y en orden de
+	 *         aparicion.
+	 */
+	public ArrayList<PropositionSymbol> getSymbols() {
+		return new ArrayList<PropositionSymbol>(symbols.keySet());
+	}
+
+	public int getNumSymbols() {
+		return symbols.size();
+	}
+
+	public int getNumClauses() {
+		return clauses.size();
+	}
+
+	public int getNumLiterals() {
+		return numLiterals;
+	}
+
+	public int getMaxClauseLength() {
+		return maxClauseLength;
+	}
+
+	/**
+	 * @return el numero de clausulas con exactamente length literales.
+	 */
+	public int getClausesOfLength(int length) {
+		return length < lengthHistogram.length ? lengthHistogram[length] : 0;
+	}
+
+	public double getMeanClauseLength() {
+		return clauses.isEmpty() ? 0 : (double) numLiterals / clauses.size();
+	}
+
+	/**
+	 * @return la proporcion de clausulas de Horn.
+	 */
+	public double getHornFraction() {
+		return clauses.isEmpty() ? 1 : (double) hornClauses / clauses.size();
+	}
+
+	/**
+	 * @return el cociente entre clausulas y variables.
+	 */
+	public double getClauseVariableRatio() {
+		return symbols.isEmpty() ? 0 : (double) clauses.size() / symbols.size();
+	}
+
+	public int getPositiveOccurrences(PropositionSymbol symbol) {
+		Integer v = symbols.get(symbol);
+		return v == null ? 0 : positiveOccurrences[v];
+	}
+
+	public int getNegativeOccurrences(PropositionSymbol symbol) {
+		Integer v = symbols.get(symbol);
+		return v == null ? 0 : negativeOccurrences[v];
+	}
+
+	/**
+	 * @return el mayor numero de apariciones de un simbolo.
+	 */
+	public int getMaxOccurrences() {
+		int max = 0;
+		for (int v = 0; v < symbols.size(); v++) {
+			max = Math.max(max, positiveOccurrences[v] + negativeOccurrences[v]);
+		}
+		return max;
+	}
+
+	/**
+	 * @return el numero de simbolos que aparecen con una sola polaridad.
+	 */
+	public int getNumPureSymbols() {
+		int pure = 0;
+		for (int v = 0; v < symbols.size(); v++) {
+			if (positiveOccurrences[v] == 0 || negativeOccurrences[v] == 0) {
+				pure++;
+			}
+		}
+		return pure;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d variables, %d clausulas (ratio %.2f), longitud media %.2f, maxima %d, %.0f%% Horn",
+				getNumSymbols(), getNumClauses(), getClauseVariableRatio(), getMeanClauseLength(),
+				getMaxClauseLength(), 100 * getHornFraction());
+	}
+
+	/*
+	 * Devuelve el indice asociado al simbolo, asignandole uno nuevo
+	 * si es la primera vez que aparece
+	 */
+	private int index(PropositionSymbol p) {
+		Integer v = symbols.get(p);
+		if (v == null) {
+			v = symbols.size();
+			symbols.put(p, v);
+			if (v == positiveOccurrences.length) {
+				positiveOccurrences = Arrays.copyOf(positiveOccurrences, v * 2);
+				negativeOccurrences = Arrays.copyOf(negativeOccurrences, v * 2);
+			}
+		}
+		return v;
+	}
+}
@@ -0,0 +1,33 @@
+package utils;
+
+/**
+ * Clausula blanda de un problema MaxSAT: puede no cumplirse, pero hacerlo
+ * cuesta su peso.
+ */
+public class SoftClause {
+
+	private Clause clause;
+	private long weight;
+
+	/**
+	 * @param weight
+	 *            coste de no cumplir la clausula, mayor que cero.
+	 */
+	public SoftClause(Clause clause, long weight) {
+		this.clause = clause;
+		this.weight = weight;
+	}
+
+	public Clause getClause() {
+		return clause;
+	}
+
+	public long getWeight() {
+		return weight;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + weight + "]" + clause;
+	}
+}
@@ -0,0 +1,110 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Restriccion de paridad: la suma modulo 2 de las variables es igual a
+ * parity. Un literal negado invierte la paridad, y una variable repetida se
+ * anula consigo misma.
+ *
+ * {@link algorithms.CDCLSat} las trata como filas de una matriz sobre la
+ * que hace eliminacion de Gauss-Jordan. Para los demas algoritmos se
+ * traducen a clausulas, cortando las largas con variables auxiliares porque
+ * una restriccion de n variables necesita 2^(n-1) clausulas.
+ */
+public class XorConstraint {
+
+	/* Variables por trozo al traducir a clausulas */
+	private static final int CHUNK = 4;
+
+	private List<PropositionSymbol> variables;
+	private boolean parity;
+
+	/**
+	 * Restriccion de que un numero impar de los literales sean ciertos.
+	 */
+	public XorConstraint(List<Literal> literals) {
+		Set<PropositionSymbol> odd = new LinkedHashSet<PropositionSymbol>();
+		boolean parity = true;
+		for (Literal l : literals) {
+			if (!odd.add(l.getAtomicSentence())) {
+				odd.remove(l.getAtomicSentence());
+			}
+			if (l.isNegativeLiteral()) {
+				parity = !parity;
+			}
+		}
+		this.variables = new ArrayList<PropositionSymbol>(odd);
+		this.parity = parity;
+	}
+
+	public List<PropositionSymbol> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * @return true si la suma de las variables debe ser impar.
+	 */
+	public boolean getParity() {
+		return parity;
+	}
+
+	/**
+	 * Traduce la restriccion a clausulas. Las de mas de CHUNK variables se
+	 * dividen definiendo t = x1 ^ x2 ^ x3, que sustituye a las tres en el
+	 * resto; como t queda determinada, se conserva el numero de modelos.
+	 *
+	 * @param prefix
+	 *            prefijo de los simbolos auxiliares; debe ser distinto para
+	 *            cada restriccion de la formula.
+	 */
+	public List<Clause> toClauses(String prefix) {
+		List<Clause> result = new ArrayList<Clause>();
+		List<Literal> pending = new ArrayList<Literal>();
+		for (PropositionSymbol v : variables) {
+			pending.add(new Literal(v));
+		}
+		int aux = 0;
+		while (pending.size() > CHUNK) {
+			Literal t = new Literal(new PropositionSymbol(prefix + "_" + (++aux)));
+			List<Literal> chunk = new ArrayList<Literal>(pending.subList(0, CHUNK - 1));
+			chunk.add(t);
+			/* x1 ^ x2 ^ x3 ^ t = 0 */
+			direct(chunk, false, result);
+			pending = new ArrayList<Literal>(pending.subList(CHUNK - 1, pending.size()));
+			pending.add(0, t);
+		}
+		direct(pending, parity, result);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("xor(");
+		for (int i = 0; i < variables.size(); i++) {
+			sb.append(i > 0 ? "," : "").append(i == 0 && !parity ? "-" : "").append(variables.get(i));
+		}
+		return sb.append(")").toString();
+	}
+
+	/*
+	 * Una clausula por cada asignacion de paridad incorrecta, que la excluye
+	 */
+	private static void direct(List<Literal> xs, boolean parity, List<Clause> result) {
+		int n = xs.size();
+		for (int mask = 0; mask < (1 << n); mask++) {
+			if ((Integer.bitCount(mask) % 2 == 1) == parity) {
+				continue;
+			}
+			List<Literal> lits = new ArrayList<Literal>(n);
+			for (int i = 0; i < n; i++) {
+				/* El bit i a 1 significa que x_i es cierta: la clausula pide lo contrario */
+				lits.add(new Literal(xs.get(i).getAtomicSentence(), (mask & (1 << i)) == 0));
+			}
+			result.add(new Clause(lits));
+		}
+	}
+}